@@ -7,6 +7,7 @@ import android.content.res.Resources;
 import android.location.Location;
 import android.util.DisplayMetrics;
 
+import com.sophieopenclass.go4lunch.utils.GeoDistance;
 import com.sophieopenclass.go4lunch.utils.PreferenceHelper;
 
 import java.util.Locale;
@@ -14,8 +15,14 @@ import java.util.Locale;
 import static com.sophieopenclass.go4lunch.utils.Constants.PREF_LANGUAGE;
 
 public class AppController extends Application {
+    // Smaller moves don't change the distances displayed in the list
+    private static final double DISTANCE_ORIGIN_THRESHOLD = 25;
     private static AppController instance;
     private Location currentLocation = null;
+    // Point the distances of the places are computed from, the version changes each time it moves
+    private double distanceOriginLat;
+    private double distanceOriginLng;
+    private int distanceOriginVersion = 0;
     private boolean settingsHaveChanged = false;
 
     @Override
@@ -35,6 +42,26 @@ public class AppController extends Application {
 
     public void setCurrentLocation(Location currentLocation) {
         this.currentLocation = currentLocation;
+        if (currentLocation != null && (distanceOriginVersion == 0
+                || GeoDistance.haversine(distanceOriginLat, distanceOriginLng, currentLocation.getLatitude(),
+                currentLocation.getLongitude()) > DISTANCE_ORIGIN_THRESHOLD)) {
+            distanceOriginLat = currentLocation.getLatitude();
+            distanceOriginLng = currentLocation.getLongitude();
+            distanceOriginVersion++;
+        }
+    }
+
+    public double getDistanceOriginLat() {
+        return distanceOriginLat;
+    }
+
+    public double getDistanceOriginLng() {
+        return distanceOriginLng;
+    }
+
+    // 0 until a location is known
+    public int getDistanceOriginVersion() {
+        return distanceOriginVersion;
     }
 
     public void checkCurrentLocale(Context context) {
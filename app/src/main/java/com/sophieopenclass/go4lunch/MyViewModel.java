@@ -4,33 +4,46 @@ import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import com.google.android.libraries.places.api.model.AutocompleteSessionToken;
+import com.google.android.libraries.places.api.model.RectangularBounds;
 import com.google.firebase.firestore.Query;
+import com.sophieopenclass.go4lunch.models.DailyLunches;
 import com.sophieopenclass.go4lunch.models.Message;
 import com.sophieopenclass.go4lunch.models.Restaurant;
 import com.sophieopenclass.go4lunch.models.User;
 import com.sophieopenclass.go4lunch.models.json_to_java.PlaceDetails;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRow;
 import com.sophieopenclass.go4lunch.models.json_to_java.RestaurantsResult;
 import com.sophieopenclass.go4lunch.repository.AlgoliaDataRepository;
+import com.sophieopenclass.go4lunch.repository.AutocompleteDataRepository;
 import com.sophieopenclass.go4lunch.repository.ChatDataRepository;
+import com.sophieopenclass.go4lunch.repository.NearbyPagedList;
 import com.sophieopenclass.go4lunch.repository.RestaurantDataRepository;
 import com.sophieopenclass.go4lunch.repository.UserDataRepository;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class MyViewModel extends ViewModel {
+    private static final int NEARBY_PREFETCH_DISTANCE = 5;
     private RestaurantDataRepository restaurantDataSource;
     private UserDataRepository userDataSource;
     private ChatDataRepository chatDataSource;
     private LiveData<User> createdUserLiveData;
     private AlgoliaDataRepository algoliaDataSource;
+    private AutocompleteDataRepository autocompleteDataSource;
+    private NearbyPagedList nearbyPagedList;
+    private String nearbyPagedListKey;
 
     public MyViewModel(RestaurantDataRepository restaurantDataSource, UserDataRepository userDataSource,
-                       ChatDataRepository chatDataSource, AlgoliaDataRepository algoliaDataSource) {
+                       ChatDataRepository chatDataSource, AlgoliaDataRepository algoliaDataSource,
+                       AutocompleteDataRepository autocompleteDataSource) {
         this.restaurantDataSource = restaurantDataSource;
         this.userDataSource = userDataSource;
         this.chatDataSource = chatDataSource;
         this.algoliaDataSource = algoliaDataSource;
+        this.autocompleteDataSource = autocompleteDataSource;
     }
 
     // RESTAURANTS
@@ -43,6 +56,42 @@ public class MyViewModel extends ViewModel {
         return restaurantDataSource.getMoreNearbyPlaces(pageToken);
     }
 
+    // Kept across configuration changes : the same search answers with the pages already loaded
+    public NearbyPagedList getNearbyPagedList(String location, List<PlaceRow> placeholders, String language) {
+        String key = location + "|" + language;
+        if (nearbyPagedList == null || !key.equals(nearbyPagedListKey)) {
+            if (nearbyPagedList != null)
+                nearbyPagedList.cancel();
+            nearbyPagedList = restaurantDataSource.createNearbyPagedList(location, placeholders, language,
+                    NEARBY_PREFETCH_DISTANCE);
+            nearbyPagedListKey = key;
+        }
+        return nearbyPagedList;
+    }
+
+    // Starts the search again, without the pages loaded so far
+    public NearbyPagedList refreshNearbyPagedList(String location, List<PlaceRow> placeholders, String language) {
+        if (nearbyPagedList != null)
+            nearbyPagedList.cancel();
+        nearbyPagedList = null;
+        return getNearbyPagedList(location, placeholders, language);
+    }
+
+    // Places already loaded, answered immediately without a request
+    public List<PlaceRow> getIndexedPlacesWithinRadius(double latitude, double longitude, double radiusMeters) {
+        return restaurantDataSource.getIndexedPlacesWithinRadius(latitude, longitude, radiusMeters);
+    }
+
+    public List<PlaceRow> getIndexedPlacesInBounds(double south, double west, double north, double east) {
+        return restaurantDataSource.getIndexedPlacesInBounds(south, west, north, east);
+    }
+
+                // -- AUTOCOMPLETE
+    public LiveData<List<PlaceRow>> getAutocompleteRows(String query, RectangularBounds bounds,
+                                                        AutocompleteSessionToken sessionToken, String language) {
+        return autocompleteDataSource.getAutocompleteRows(query, bounds, sessionToken, language);
+    }
+
     public LiveData<PlaceDetails> getPlaceDetails(String placeId, String language) {
         return restaurantDataSource.getPlaceDetails(placeId, language);
     }
@@ -56,8 +105,8 @@ public class MyViewModel extends ViewModel {
         return userDataSource.updateChosenRestaurant(uid, restaurant, date);
     }
 
-    public void deleteChosenRestaurant(String uid, String date) {
-        userDataSource.deleteChosenRestaurant(uid, date);
+    public LiveData<Boolean> deleteChosenRestaurant(String uid, String date) {
+        return userDataSource.deleteChosenRestaurant(uid, date);
     }
 
     public void addRestaurantToFavorites(Restaurant restaurant, String userId) {
@@ -93,6 +142,14 @@ public class MyViewModel extends ViewModel {
         return userDataSource.getUsersEatingAtRestaurantToday(placeId, date);
     }
 
+    public LiveData<DailyLunches> getTodayLunches() {
+        return userDataSource.getTodayLunches();
+    }
+
+    public LiveData<Map<String, List<String>>> getUidsEatingAtRestaurants(List<String> placeIds, String date) {
+        return userDataSource.getUidsEatingAtRestaurants(placeIds, date);
+    }
+
     public LiveData<String> updateUsername(String username, String uid) {
         return userDataSource.updateUsername(username, uid);
     }
@@ -139,4 +196,10 @@ public class MyViewModel extends ViewModel {
     public LiveData<String> updateUserUrlPicture(String urlPicture, String uid) {
         return userDataSource.updateUserUrlPicture(urlPicture, uid);
     }
+
+    @Override
+    protected void onCleared() {
+        if (nearbyPagedList != null)
+            nearbyPagedList.cancel();
+    }
 }
@@ -1,6 +1,7 @@
 package com.sophieopenclass.go4lunch.api;
 
 import com.sophieopenclass.go4lunch.models.json_to_java.PlaceDetailsResult;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRowResult;
 import com.sophieopenclass.go4lunch.models.json_to_java.RestaurantsResult;
 
 import retrofit2.Call;
@@ -8,6 +9,9 @@ import retrofit2.http.GET;
 import retrofit2.http.Query;
 
 public interface PlaceApi {
+    // Field masks for Place Details : a list row only needs a few fields, the details screen needs more
+    String ROW_FIELDS = "place_id,name,vicinity,geometry/location,opening_hours,rating,photos,utc_offset";
+    String FULL_FIELDS = ROW_FIELDS + ",formatted_address,formatted_phone_number,international_phone_number,website";
 
     @GET("nearbysearch/json?rankby=distance&type=restaurant")
     Call<RestaurantsResult> getNearbyPlaces(@Query("location") String location);
@@ -17,6 +21,11 @@ public interface PlaceApi {
 
     @GET("details/json")
     Call<PlaceDetailsResult> getPlaceDetails(@Query("place_id") String placeId,
-                                            @Query("language") String language);
-}
+                                            @Query("language") String language,
+                                            @Query("fields") String fields);
 
+    @GET("details/json")
+    Call<PlaceRowResult> getPlaceRow(@Query("place_id") String placeId,
+                                     @Query("language") String language,
+                                     @Query("fields") String fields);
+}
@@ -0,0 +1,73 @@
+package com.sophieopenclass.go4lunch.api;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.request.target.Target;
+import com.sophieopenclass.go4lunch.BuildConfig;
+import com.sophieopenclass.go4lunch.models.PlacePhoto;
+
+import java.io.InputStream;
+
+import static com.sophieopenclass.go4lunch.api.PlaceService.API_URL;
+
+/**
+ * Loads a PlacePhoto at the width bucket matching the size of the target view.
+ * The disk cache key is the photo reference and the bucket, not the URL, so it doesn't depend
+ * on the API key and every view of a similar size shares the same file.
+ */
+public class PlacePhotoModelLoader implements ModelLoader<PlacePhoto, InputStream> {
+    private final ModelLoader<GlideUrl, InputStream> urlLoader;
+
+    PlacePhotoModelLoader(ModelLoader<GlideUrl, InputStream> urlLoader) {
+        this.urlLoader = urlLoader;
+    }
+
+    @Nullable
+    @Override
+    public LoadData<InputStream> buildLoadData(@NonNull PlacePhoto placePhoto, int width, int height,
+                                               @NonNull Options options) {
+        int requestedWidth = width != Target.SIZE_ORIGINAL && width > 0 ? width : placePhoto.getTargetWidth();
+        int bucket = PlacePhoto.getWidthBucket(requestedWidth);
+        String url = API_URL + "photo?maxwidth=" + bucket + "&photoreference=" + placePhoto.getPhotoReference()
+                + "&key=" + BuildConfig.API_KEY;
+        return urlLoader.buildLoadData(new PlacePhotoUrl(url, placePhoto.getPhotoReference() + "|" + bucket),
+                width, height, options);
+    }
+
+    @Override
+    public boolean handles(@NonNull PlacePhoto placePhoto) {
+        return true;
+    }
+
+    private static class PlacePhotoUrl extends GlideUrl {
+        private final String cacheKey;
+
+        PlacePhotoUrl(String url, String cacheKey) {
+            super(url);
+            this.cacheKey = cacheKey;
+        }
+
+        @Override
+        public String getCacheKey() {
+            return cacheKey;
+        }
+    }
+
+    public static class Factory implements ModelLoaderFactory<PlacePhoto, InputStream> {
+        @NonNull
+        @Override
+        public ModelLoader<PlacePhoto, InputStream> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new PlacePhotoModelLoader(multiFactory.build(GlideUrl.class, InputStream.class));
+        }
+
+        @Override
+        public void teardown() {
+        }
+    }
+}
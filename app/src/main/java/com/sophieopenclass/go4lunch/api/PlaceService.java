@@ -2,53 +2,95 @@ package com.sophieopenclass.go4lunch.api;
 
 import com.sophieopenclass.go4lunch.BuildConfig;
 
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.ConnectionPool;
 import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
+/**
+ * App-scoped network stack for the Places API.
+ * The OkHttpClient and the Retrofit instance are built once and shared by every service,
+ * so interceptors and connection pools can't pile up when new ViewModel factories are created.
+ */
 public class PlaceService {
-    private static HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
-    private static OkHttpClient.Builder httpClient = new OkHttpClient.Builder();
     public static final String API_URL = "https://maps.googleapis.com/maps/api/place/";
     public static final String PHOTO_URL = "photo?maxwidth=400&&photoreference=";
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    // Runtime counters, to make sure only one client and one set of interceptors ever exist
+    private static final AtomicInteger clientCount = new AtomicInteger();
+    private static final AtomicInteger interceptorCount = new AtomicInteger();
+
+    private static OkHttpClient httpClient;
+    private static Retrofit retrofit;
 
-    private static void initLogging(){
-        logging.level(HttpLoggingInterceptor.Level.BODY);
-        httpClient.addInterceptor(logging);
+    private PlaceService() {}
+
+    private static HttpLoggingInterceptor getLoggingInterceptor() {
+        HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
+        // Full bodies are only logged in debug builds, release builds don't log anything
+        logging.level(BuildConfig.DEBUG ? HttpLoggingInterceptor.Level.BODY : HttpLoggingInterceptor.Level.NONE);
+        interceptorCount.incrementAndGet();
+        return logging;
     }
 
-    private static void initApiKey() {
-        httpClient.addInterceptor(chain -> {
+    private static Interceptor getApiKeyInterceptor() {
+        interceptorCount.incrementAndGet();
+        return chain -> {
             Request original = chain.request();
-            HttpUrl originalHttpUrl = original.url();
-
-            HttpUrl url = originalHttpUrl.newBuilder()
+            HttpUrl url = original.url().newBuilder()
                     .addQueryParameter("key", BuildConfig.API_KEY)
                     .build();
+            return chain.proceed(original.newBuilder().url(url).build());
+        };
+    }
 
-            // Request customization: add request headers
-            Request.Builder requestBuilder = original.newBuilder()
-                    .url(url);
+    // Gzip is handled transparently by OkHttp as long as no "Accept-Encoding" header is set manually
+    public static synchronized OkHttpClient getHttpClient() {
+        if (httpClient == null) {
+            httpClient = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                    .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                    .addInterceptor(getApiKeyInterceptor())
+                    .addInterceptor(getLoggingInterceptor())
+                    .build();
+            clientCount.incrementAndGet();
+        }
+        return httpClient;
+    }
 
-            Request request = requestBuilder.build();
-            return chain.proceed(request);
-        });
+    private static synchronized Retrofit getRetrofit() {
+        if (retrofit == null) {
+            retrofit = new Retrofit.Builder()
+                    .baseUrl(API_URL)
+                    .addConverterFactory(GsonConverterFactory.create(PlacesTypeAdapterFactory.getGson()))
+                    .client(getHttpClient())
+                    .build();
+        }
+        return retrofit;
     }
 
     public static <S> S createService(Class<S> serviceClass) {
-        initApiKey();
-        initLogging();
-        Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl(API_URL)
-                .addConverterFactory(GsonConverterFactory.create())
-                .client(httpClient.build())
-                .build();
-
-        return retrofit.create(serviceClass);
+        return getRetrofit().create(serviceClass);
     }
 
+    // --- METRICS ---
 
-}
\ No newline at end of file
+    public static int getClientCount() {
+        return clientCount.get();
+    }
+
+    public static int getInterceptorCount() {
+        return interceptorCount.get();
+    }
+}
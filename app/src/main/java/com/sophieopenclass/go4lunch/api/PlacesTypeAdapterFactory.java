@@ -0,0 +1,368 @@
+package com.sophieopenclass.go4lunch.api;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.sophieopenclass.go4lunch.models.json_to_java.Close;
+import com.sophieopenclass.go4lunch.models.json_to_java.Geometry;
+import com.sophieopenclass.go4lunch.models.json_to_java.Location;
+import com.sophieopenclass.go4lunch.models.json_to_java.Open;
+import com.sophieopenclass.go4lunch.models.json_to_java.OpeningHours;
+import com.sophieopenclass.go4lunch.models.json_to_java.Period;
+import com.sophieopenclass.go4lunch.models.json_to_java.Photo;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceDetails;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceDetailsResult;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRow;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRowResult;
+import com.sophieopenclass.go4lunch.models.json_to_java.RestaurantsResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written streaming decoders for the Places responses, used instead of Gson's reflection.
+ * Only the fields read by the app are decoded : every other subtree (reviews, address components,
+ * viewport, html attributions...) is skipped without being materialized.
+ * Encoding still goes through Gson's reflective adapters.
+ *
+ * Retrofit runs the converter on OkHttp's background thread before posting the callback,
+ * so decoding never happens on the main thread.
+ */
+public class PlacesTypeAdapterFactory implements TypeAdapterFactory {
+    private static Gson gson;
+
+    public static synchronized Gson getGson() {
+        if (gson == null)
+            gson = new GsonBuilder().registerTypeAdapterFactory(new PlacesTypeAdapterFactory()).create();
+        return gson;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> rawType = type.getRawType();
+        if (rawType != RestaurantsResult.class && rawType != PlaceDetailsResult.class
+                && rawType != PlaceRowResult.class)
+            return null;
+
+        TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+        return new TypeAdapter<T>() {
+            @Override
+            public void write(JsonWriter out, T value) throws IOException {
+                delegate.write(out, value);
+            }
+
+            @Override
+            public T read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                if (rawType == RestaurantsResult.class)
+                    return (T) readRestaurantsResult(in);
+                else if (rawType == PlaceDetailsResult.class)
+                    return (T) readPlaceDetailsResult(in);
+                else
+                    return (T) readPlaceRowResult(in);
+            }
+        };
+    }
+
+    // --- RESPONSES ---
+
+    static RestaurantsResult readRestaurantsResult(JsonReader in) throws IOException {
+        RestaurantsResult restaurantsResult = new RestaurantsResult();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "next_page_token":
+                    restaurantsResult.setNextPageToken(nextStringOrNull(in));
+                    break;
+                case "status":
+                    restaurantsResult.setStatus(nextStringOrNull(in));
+                    break;
+                case "results":
+                    List<PlaceDetails> results = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext())
+                        results.add(readPlace(in, new PlaceDetails(), false));
+                    in.endArray();
+                    restaurantsResult.setPlaceDetails(results);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return restaurantsResult;
+    }
+
+    static PlaceDetailsResult readPlaceDetailsResult(JsonReader in) throws IOException {
+        PlaceDetailsResult placeDetailsResult = new PlaceDetailsResult();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "result":
+                    placeDetailsResult.setPlaceDetails(readPlace(in, new PlaceDetails(), false));
+                    break;
+                case "status":
+                    placeDetailsResult.setStatus(nextStringOrNull(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return placeDetailsResult;
+    }
+
+    static PlaceRowResult readPlaceRowResult(JsonReader in) throws IOException {
+        PlaceRowResult placeRowResult = new PlaceRowResult();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "result":
+                    placeRowResult.setPlaceRow(readPlace(in, new PlaceRow(), true));
+                    break;
+                case "status":
+                    placeRowResult.setStatus(nextStringOrNull(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return placeRowResult;
+    }
+
+    // --- PLACES ---
+
+    // A row only keeps its first photo, which is the only one displayed in the list
+    private static <T extends PlaceRow> T readPlace(JsonReader in, T place, boolean firstPhotoOnly) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        PlaceDetails details = place instanceof PlaceDetails ? (PlaceDetails) place : null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "place_id":
+                    place.setPlaceId(in.nextString());
+                    break;
+                case "name":
+                    place.setName(in.nextString());
+                    break;
+                case "vicinity":
+                    place.setVicinity(in.nextString());
+                    break;
+                case "rating":
+                    place.setRating(in.nextDouble());
+                    break;
+                case "utc_offset":
+                    place.setUtcOffset(in.nextInt());
+                    break;
+                case "geometry":
+                    place.setGeometry(readGeometry(in));
+                    break;
+                case "opening_hours":
+                    place.setOpeningHours(readOpeningHours(in));
+                    break;
+                case "photos":
+                    place.setPhotos(readPhotos(in, firstPhotoOnly));
+                    break;
+                default:
+                    if (details == null || !readDetailsField(in, name, details))
+                        in.skipValue();
+            }
+        }
+        in.endObject();
+        return place;
+    }
+
+    private static boolean readDetailsField(JsonReader in, String name, PlaceDetails details) throws IOException {
+        switch (name) {
+            case "formatted_address":
+                details.setFormattedAddress(in.nextString());
+                return true;
+            case "formatted_phone_number":
+                details.setFormattedPhoneNumber(in.nextString());
+                return true;
+            case "international_phone_number":
+                details.setInternationalPhoneNumber(in.nextString());
+                return true;
+            case "website":
+                details.setWebsite(in.nextString());
+                return true;
+            case "business_status":
+                details.setBusinessStatus(in.nextString());
+                return true;
+            case "user_ratings_total":
+                details.setUserRatingsTotal(in.nextInt());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Geometry readGeometry(JsonReader in) throws IOException {
+        Geometry geometry = new Geometry();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("location") && in.peek() != JsonToken.NULL) {
+                Location location = new Location();
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "lat":
+                            location.setLat(in.nextDouble());
+                            break;
+                        case "lng":
+                            location.setLng(in.nextDouble());
+                            break;
+                        default:
+                            in.skipValue();
+                    }
+                }
+                in.endObject();
+                geometry.setLocation(location);
+            } else
+                in.skipValue();
+        }
+        in.endObject();
+        return geometry;
+    }
+
+    private static List<Photo> readPhotos(JsonReader in, boolean firstPhotoOnly) throws IOException {
+        List<Photo> photos = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (firstPhotoOnly && !photos.isEmpty()) {
+                in.skipValue();
+                continue;
+            }
+            Photo photo = new Photo();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (name.equals("photo_reference"))
+                    photo.setPhotoReference(nextStringOrNull(in));
+                else if (name.equals("width") && in.peek() == JsonToken.NUMBER)
+                    photo.setWidth(in.nextInt());
+                else if (name.equals("height") && in.peek() == JsonToken.NUMBER)
+                    photo.setHeight(in.nextInt());
+                else
+                    in.skipValue();
+            }
+            in.endObject();
+            photos.add(photo);
+        }
+        in.endArray();
+        return photos;
+    }
+
+    private static OpeningHours readOpeningHours(JsonReader in) throws IOException {
+        OpeningHours openingHours = new OpeningHours();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "open_now":
+                    openingHours.setOpenNow(in.nextBoolean());
+                    break;
+                case "weekday_text":
+                    List<String> weekdayText = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext())
+                        weekdayText.add(in.nextString());
+                    in.endArray();
+                    openingHours.setWeekdayText(weekdayText);
+                    break;
+                case "periods":
+                    List<Period> periods = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext())
+                        periods.add(readPeriod(in));
+                    in.endArray();
+                    openingHours.setPeriods(periods);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return openingHours;
+    }
+
+    private static Period readPeriod(JsonReader in) throws IOException {
+        Period period = new Period();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            if (name.equals("open")) {
+                Open open = new Open();
+                readDayAndTime(in, open::setDay, open::setTime);
+                period.setOpen(open);
+            } else if (name.equals("close")) {
+                Close close = new Close();
+                readDayAndTime(in, close::setDay, close::setTime);
+                period.setClose(close);
+            } else
+                in.skipValue();
+        }
+        in.endObject();
+        return period;
+    }
+
+    private static void readDayAndTime(JsonReader in, DaySetter daySetter, TimeSetter timeSetter) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "day":
+                    daySetter.setDay(in.nextInt());
+                    break;
+                case "time":
+                    timeSetter.setTime(in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    private static String nextStringOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private interface DaySetter {
+        void setDay(Integer day);
+    }
+
+    private interface TimeSetter {
+        void setTime(String time);
+    }
+}
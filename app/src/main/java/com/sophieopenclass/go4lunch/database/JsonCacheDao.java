@@ -0,0 +1,20 @@
+package com.sophieopenclass.go4lunch.database;
+
+import androidx.annotation.Nullable;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+@Dao
+public interface JsonCacheDao {
+    @Nullable
+    @Query("SELECT * FROM json_cache WHERE `key` = :key")
+    JsonCacheEntry get(String key);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void put(JsonCacheEntry entry);
+
+    @Query("DELETE FROM json_cache WHERE savedAt < :minSavedAt")
+    int deleteSavedBefore(long minSavedAt);
+}
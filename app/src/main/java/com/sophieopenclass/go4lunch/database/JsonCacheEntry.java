@@ -0,0 +1,44 @@
+package com.sophieopenclass.go4lunch.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// A Places response stored as JSON, with the time it was downloaded to check its freshness
+@Entity(tableName = "json_cache")
+public class JsonCacheEntry {
+    @PrimaryKey
+    @NonNull
+    private String key;
+    private String json;
+    private long savedAt;
+
+    public JsonCacheEntry(@NonNull String key, String json, long savedAt) {
+        this.key = key;
+        this.json = json;
+        this.savedAt = savedAt;
+    }
+
+    // --- GETTERS ---
+    @NonNull
+    public String getKey() {
+        return key;
+    }
+    public String getJson() {
+        return json;
+    }
+    public long getSavedAt() {
+        return savedAt;
+    }
+
+    // --- SETTERS ---
+    public void setKey(@NonNull String key) {
+        this.key = key;
+    }
+    public void setJson(String json) {
+        this.json = json;
+    }
+    public void setSavedAt(long savedAt) {
+        this.savedAt = savedAt;
+    }
+}
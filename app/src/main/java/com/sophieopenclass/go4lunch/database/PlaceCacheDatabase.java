@@ -0,0 +1,25 @@
+package com.sophieopenclass.go4lunch.database;
+
+import android.content.Context;
+
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+
+// Local copy of the Places responses, so that the list and the map can be displayed without network
+@Database(entities = {JsonCacheEntry.class}, version = 1, exportSchema = false)
+public abstract class PlaceCacheDatabase extends RoomDatabase {
+    private static final String DATABASE_NAME = "place_cache.db";
+    private static PlaceCacheDatabase instance;
+
+    public abstract JsonCacheDao jsonCacheDao();
+
+    public static synchronized PlaceCacheDatabase getInstance(Context context) {
+        if (instance == null)
+            // It's only a cache : it can be dropped instead of migrated
+            instance = Room.databaseBuilder(context.getApplicationContext(), PlaceCacheDatabase.class, DATABASE_NAME)
+                    .fallbackToDestructiveMigration()
+                    .build();
+        return instance;
+    }
+}
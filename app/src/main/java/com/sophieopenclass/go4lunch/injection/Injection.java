@@ -2,32 +2,70 @@ package com.sophieopenclass.go4lunch.injection;
 
 import com.algolia.search.saas.Client;
 import com.algolia.search.saas.Index;
+import com.google.android.libraries.places.api.Places;
 import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.sophieopenclass.go4lunch.AppController;
 import com.sophieopenclass.go4lunch.BuildConfig;
 import com.sophieopenclass.go4lunch.api.PlaceApi;
 import com.sophieopenclass.go4lunch.api.PlaceService;
+import com.sophieopenclass.go4lunch.api.PlacesTypeAdapterFactory;
+import com.sophieopenclass.go4lunch.database.JsonCacheDao;
+import com.sophieopenclass.go4lunch.database.PlaceCacheDatabase;
 import com.sophieopenclass.go4lunch.repository.AlgoliaDataRepository;
+import com.sophieopenclass.go4lunch.repository.AutocompleteDataRepository;
 import com.sophieopenclass.go4lunch.repository.ChatDataRepository;
+import com.sophieopenclass.go4lunch.repository.PlaceDiskCache;
 import com.sophieopenclass.go4lunch.repository.RestaurantDataRepository;
 import com.sophieopenclass.go4lunch.repository.UserDataRepository;
 import com.sophieopenclass.go4lunch.utils.ViewModelFactory;
 
 import static com.sophieopenclass.go4lunch.utils.Constants.CHAT_COLLECTION_NAME;
 import static com.sophieopenclass.go4lunch.utils.Constants.INDEX_WORKMATES;
+import static com.sophieopenclass.go4lunch.utils.Constants.LUNCH_COLLECTION_NAME;
 import static com.sophieopenclass.go4lunch.utils.Constants.USER_COLLECTION_NAME;
 
 public class Injection {
+    private static PlaceApi placeApi;
+    private static RestaurantDataRepository restaurantDataSource;
+    private static AutocompleteDataRepository autocompleteDataSource;
+
     private Injection() {}
 
-    private static RestaurantDataRepository provideRestaurantDataSource() {
-        PlaceApi placeApi = PlaceService.createService(PlaceApi.class);
-        return new RestaurantDataRepository(placeApi);
+    // The service is app-scoped : it shares PlaceService's single OkHttpClient
+    private static synchronized PlaceApi providePlaceApi() {
+        if (placeApi == null)
+            placeApi = PlaceService.createService(PlaceApi.class);
+        return placeApi;
+    }
+
+    private static PlaceDiskCache providePlaceDiskCache() {
+        JsonCacheDao jsonCacheDao = PlaceCacheDatabase.getInstance(AppController.getInstance()).jsonCacheDao();
+        return new PlaceDiskCache(jsonCacheDao, PlacesTypeAdapterFactory.getGson());
+    }
+
+    // App-scoped so that its in-memory caches are shared by every screen
+    private static synchronized RestaurantDataRepository provideRestaurantDataSource() {
+        if (restaurantDataSource == null)
+            restaurantDataSource = new RestaurantDataRepository(providePlaceApi(), providePlaceDiskCache());
+        return restaurantDataSource;
+    }
+
+    // App-scoped as well, so that its PlacesClient and prediction cache outlive the activities
+    private static synchronized AutocompleteDataRepository provideAutocompleteDataSource() {
+        if (autocompleteDataSource == null) {
+            if (!Places.isInitialized())
+                Places.initialize(AppController.getInstance(), BuildConfig.API_KEY);
+            autocompleteDataSource = new AutocompleteDataRepository(Places.createClient(AppController.getInstance()),
+                    provideRestaurantDataSource());
+        }
+        return autocompleteDataSource;
     }
 
     private static UserDataRepository provideUserDataSource() {
         CollectionReference userCollectionReference = FirebaseFirestore.getInstance().collection(USER_COLLECTION_NAME);
-        return new UserDataRepository(userCollectionReference);
+        CollectionReference lunchCollectionReference = FirebaseFirestore.getInstance().collection(LUNCH_COLLECTION_NAME);
+        return new UserDataRepository(userCollectionReference, lunchCollectionReference);
     }
 
     private static ChatDataRepository provideMessageDataSource() {
@@ -46,6 +84,8 @@ public class Injection {
         UserDataRepository userDataSource = provideUserDataSource();
         ChatDataRepository messageDataSource = provideMessageDataSource();
         AlgoliaDataRepository algoliaDataSource = provideAlgoliaDataSource();
-        return new ViewModelFactory(restaurantDataSource, userDataSource, messageDataSource, algoliaDataSource);
+        AutocompleteDataRepository autocompleteDataSource = provideAutocompleteDataSource();
+        return new ViewModelFactory(restaurantDataSource, userDataSource, messageDataSource, algoliaDataSource,
+                autocompleteDataSource);
     }
 }
@@ -0,0 +1,33 @@
+package com.sophieopenclass.go4lunch.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Result of a batch request : successful items in input order, and the error of every failed id
+public class BatchResult<T> {
+    private final List<T> results;
+    private final Map<String, String> errors;
+    private final boolean deadlineExceeded;
+
+    public BatchResult(List<T> results, Map<String, String> errors, boolean deadlineExceeded) {
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+        this.errors = Collections.unmodifiableMap(errors);
+        this.deadlineExceeded = deadlineExceeded;
+    }
+
+    // --- GETTERS ---
+    public List<T> getResults() {
+        return results;
+    }
+    public Map<String, String> getErrors() {
+        return errors;
+    }
+    public boolean isDeadlineExceeded() {
+        return deadlineExceeded;
+    }
+    public boolean isComplete() {
+        return errors.isEmpty();
+    }
+}
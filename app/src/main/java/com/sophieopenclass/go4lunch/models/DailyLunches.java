@@ -0,0 +1,69 @@
+package com.sophieopenclass.go4lunch.models;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Firestore lunches/{date} document : who eats where on this date, kept in sync with the users' choices
+public class DailyLunches {
+    // placeId -> (uid -> username)
+    private Map<String, Map<String, String>> restaurants = new HashMap<>();
+
+    public DailyLunches() {
+    }
+
+    public DailyLunches(DailyLunches other) {
+        for (Map.Entry<String, Map<String, String>> restaurant : other.restaurants.entrySet())
+            restaurants.put(restaurant.getKey(), new HashMap<>(restaurant.getValue()));
+    }
+
+    // --- GETTERS ---
+    public Map<String, Map<String, String>> getRestaurants() {
+        return restaurants;
+    }
+
+    // --- SETTERS ---
+    public void setRestaurants(Map<String, Map<String, String>> restaurants) {
+        this.restaurants = restaurants;
+    }
+
+    // UTILS
+
+    // A user eats at one restaurant a day : the previous choice is removed
+    public void choose(String uid, String username, String placeId) {
+        unchoose(uid);
+        Map<String, String> participants = restaurants.get(placeId);
+        if (participants == null) {
+            participants = new HashMap<>();
+            restaurants.put(placeId, participants);
+        }
+        participants.put(uid, username);
+    }
+
+    // The placeId the user had chosen, or null
+    public String unchoose(String uid) {
+        for (Map.Entry<String, Map<String, String>> restaurant : restaurants.entrySet())
+            if (restaurant.getValue().remove(uid) != null) {
+                if (restaurant.getValue().isEmpty())
+                    restaurants.remove(restaurant.getKey());
+                return restaurant.getKey();
+            }
+        return null;
+    }
+
+    public List<String> getUids(String placeId) {
+        Map<String, String> participants = restaurants.get(placeId);
+        return participants == null ? new ArrayList<>() : new ArrayList<>(participants.keySet());
+    }
+
+    public Map<String, String> getParticipants(String placeId) {
+        Map<String, String> participants = restaurants.get(placeId);
+        return participants == null ? new HashMap<>() : participants;
+    }
+
+    public int getCount(String placeId) {
+        Map<String, String> participants = restaurants.get(placeId);
+        return participants == null ? 0 : participants.size();
+    }
+}
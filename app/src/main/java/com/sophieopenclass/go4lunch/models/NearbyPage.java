@@ -0,0 +1,29 @@
+package com.sophieopenclass.go4lunch.models;
+
+import androidx.annotation.Nullable;
+
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// A page of Nearby Search results, already completed with the row fields of each place
+public class NearbyPage {
+    private final List<PlaceRow> placeRows;
+    private final String nextPageToken;
+
+    public NearbyPage(List<PlaceRow> placeRows, @Nullable String nextPageToken) {
+        this.placeRows = Collections.unmodifiableList(new ArrayList<>(placeRows));
+        this.nextPageToken = nextPageToken;
+    }
+
+    // --- GETTERS ---
+    public List<PlaceRow> getPlaceRows() {
+        return placeRows;
+    }
+    @Nullable
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+}
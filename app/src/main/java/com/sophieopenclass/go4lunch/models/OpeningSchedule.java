@@ -0,0 +1,183 @@
+package com.sophieopenclass.go4lunch.models;
+
+import androidx.annotation.Nullable;
+
+import com.sophieopenclass.go4lunch.models.json_to_java.Close;
+import com.sophieopenclass.go4lunch.models.json_to_java.Open;
+import com.sophieopenclass.go4lunch.models.json_to_java.OpeningHours;
+import com.sophieopenclass.go4lunch.models.json_to_java.Period;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+import static com.sophieopenclass.go4lunch.utils.Constants.OPEN_24H;
+
+/**
+ * Opening hours of a place compiled into minute-of-week intervals (sunday 00:00 = 0, in the
+ * time zone of the place). It's compiled once per place, the evaluation methods only do integer
+ * arithmetic so they can be called from onBindViewHolder.
+ */
+public class OpeningSchedule {
+    public static final int NONE = -1;
+    static final int MINUTES_PER_DAY = 24 * 60;
+    static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+    private static final int CLOSING_SOON_MINUTES = 60;
+    // 1970-01-01 was a thursday
+    private static final int EPOCH_MINUTE_OF_WEEK = 4 * MINUTES_PER_DAY;
+
+    // Sorted by opening minute. A close is greater than MINUTES_PER_WEEK when it's in the next week
+    private final int[] opens;
+    private final int[] closes;
+    // "11h30" labels of each interval, built at compilation
+    private final String[] openLabels;
+    private final String[] closeLabels;
+    private final boolean alwaysOpen;
+    private final int utcOffsetMinutes;
+
+    private OpeningSchedule(int[] opens, int[] closes, String[] openLabels, String[] closeLabels,
+                            boolean alwaysOpen, int utcOffsetMinutes) {
+        this.opens = opens;
+        this.closes = closes;
+        this.openLabels = openLabels;
+        this.closeLabels = closeLabels;
+        this.alwaysOpen = alwaysOpen;
+        this.utcOffsetMinutes = utcOffsetMinutes;
+    }
+
+    /**
+     * @param utcOffset offset of the place in minutes, as returned by the Places API. When it's missing
+     *                  the place is assumed to be in the time zone of the device.
+     * @return null when there are no usable periods
+     */
+    @Nullable
+    public static OpeningSchedule compile(@Nullable OpeningHours openingHours, @Nullable Integer utcOffset) {
+        if (openingHours == null || openingHours.getPeriods() == null || openingHours.getPeriods().isEmpty())
+            return null;
+        int offset = utcOffset != null ? utcOffset
+                : TimeZone.getDefault().getOffset(System.currentTimeMillis()) / 60_000;
+
+        List<Period> periods = openingHours.getPeriods();
+        // Opening minute in the high bits and index of the period in the low bits, to sort both together
+        long[] sortKeys = new long[periods.size()];
+        int[] closeMinutes = new int[periods.size()];
+        int count = 0;
+        for (int i = 0; i < periods.size(); i++) {
+            Open open = periods.get(i).getOpen();
+            Close close = periods.get(i).getClose();
+            if (open == null || open.getDay() == null || open.getTime() == null)
+                continue;
+            // A place open 24h/7 has a single period opening on sunday at 0000, without close
+            if (close == null || close.getDay() == null || close.getTime() == null) {
+                if (open.getDay() == 0 && OPEN_24H.equals(open.getTime()))
+                    return new OpeningSchedule(new int[0], new int[0], new String[0], new String[0], true, offset);
+                continue;
+            }
+            int openMinute = toMinuteOfWeek(open.getDay(), open.getTime());
+            int closeMinute = toMinuteOfWeek(close.getDay(), close.getTime());
+            if (openMinute == NONE || closeMinute == NONE)
+                continue;
+            if (closeMinute <= openMinute)
+                closeMinute += MINUTES_PER_WEEK;
+            sortKeys[count] = ((long) openMinute << 32) | i;
+            closeMinutes[i] = closeMinute;
+            count++;
+        }
+        if (count == 0)
+            return null;
+
+        Arrays.sort(sortKeys, 0, count);
+        int[] opens = new int[count];
+        int[] closes = new int[count];
+        String[] openLabels = new String[count];
+        String[] closeLabels = new String[count];
+        for (int i = 0; i < count; i++) {
+            int period = (int) sortKeys[i];
+            opens[i] = (int) (sortKeys[i] >>> 32);
+            closes[i] = closeMinutes[period];
+            openLabels[i] = toLabel(periods.get(period).getOpen().getTime());
+            closeLabels[i] = toLabel(periods.get(period).getClose().getTime());
+        }
+        return new OpeningSchedule(opens, closes, openLabels, closeLabels, false, offset);
+    }
+
+    // --- EVALUATION ---
+
+    // Current minute of the week in the time zone of the place
+    public int getMinuteOfWeek(long timeMillis) {
+        long minutes = timeMillis / 60_000L + utcOffsetMinutes + EPOCH_MINUTE_OF_WEEK;
+        int minuteOfWeek = (int) (minutes % MINUTES_PER_WEEK);
+        return minuteOfWeek < 0 ? minuteOfWeek + MINUTES_PER_WEEK : minuteOfWeek;
+    }
+
+    public boolean isAlwaysOpen() {
+        return alwaysOpen;
+    }
+
+    // Index of the interval the place is open in, or NONE if it's closed
+    public int getOpenInterval(int minuteOfWeek) {
+        for (int i = 0; i < opens.length; i++) {
+            if (contains(i, minuteOfWeek) || contains(i, minuteOfWeek + MINUTES_PER_WEEK))
+                return i;
+        }
+        return NONE;
+    }
+
+    public boolean isOpen(int minuteOfWeek) {
+        return alwaysOpen || getOpenInterval(minuteOfWeek) != NONE;
+    }
+
+    public boolean isClosingSoon(int interval, int minuteOfWeek) {
+        int minutesLeft = getMinutesBeforeClosing(interval, minuteOfWeek);
+        return minutesLeft > 0 && minutesLeft <= CLOSING_SOON_MINUTES;
+    }
+
+    public int getMinutesBeforeClosing(int interval, int minuteOfWeek) {
+        int minutesLeft = closes[interval] - minuteOfWeek;
+        return minutesLeft > MINUTES_PER_WEEK ? minutesLeft - MINUTES_PER_WEEK : minutesLeft;
+    }
+
+    // Index of the next interval opening later the same day, or NONE
+    public int getNextOpeningToday(int minuteOfWeek) {
+        int endOfDay = minuteOfWeek - minuteOfWeek % MINUTES_PER_DAY + MINUTES_PER_DAY;
+        for (int i = 0; i < opens.length; i++) {
+            if (opens[i] > minuteOfWeek && opens[i] < endOfDay)
+                return i;
+        }
+        return NONE;
+    }
+
+    public String getOpenLabel(int interval) {
+        return openLabels[interval];
+    }
+
+    public String getCloseLabel(int interval) {
+        return closeLabels[interval];
+    }
+
+    private boolean contains(int interval, int minute) {
+        return opens[interval] <= minute && minute < closes[interval];
+    }
+
+    // --- COMPILATION ---
+
+    // day is 0 (sunday) to 6 and time is "HHmm", as in the Places API
+    static int toMinuteOfWeek(int day, String time) {
+        if (day < 0 || day > 6 || time.length() != 4)
+            return NONE;
+        int hours = digit(time, 0) * 10 + digit(time, 1);
+        int minutes = digit(time, 2) * 10 + digit(time, 3);
+        if (hours < 0 || hours > 24 || minutes < 0 || minutes > 59)
+            return NONE;
+        return day * MINUTES_PER_DAY + hours * 60 + minutes;
+    }
+
+    private static int digit(String time, int position) {
+        char c = time.charAt(position);
+        return c >= '0' && c <= '9' ? c - '0' : -100;
+    }
+
+    private static String toLabel(String time) {
+        return time.substring(0, 2) + "h" + time.substring(2);
+    }
+}
@@ -0,0 +1,93 @@
+package com.sophieopenclass.go4lunch.models;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.sophieopenclass.go4lunch.models.json_to_java.Photo;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRow;
+
+import java.util.List;
+
+/**
+ * Glide model of a Places photo : the photo is downloaded at the smallest width bucket covering the
+ * target view, see PlacePhotoModelLoader. The API key is only added when the URL is built,
+ * so it's not part of the model nor of the cache key.
+ */
+public class PlacePhoto {
+    private static final int[] WIDTH_BUCKETS = {100, 200, 400, 800, 1600};
+    private static final String PHOTO_REFERENCE_PARAM = "photoreference=";
+    public static final int DEFAULT_WIDTH = 400;
+    private final String photoReference;
+    private final int targetWidth;
+
+    public PlacePhoto(@NonNull String photoReference, int targetWidth) {
+        this.photoReference = photoReference;
+        this.targetWidth = targetWidth;
+    }
+
+    @Nullable
+    public static PlacePhoto of(PlaceRow placeRow, int position, int targetWidth) {
+        List<Photo> photos = placeRow.getPhotos();
+        if (photos == null || position >= photos.size() || photos.get(position).getPhotoReference() == null)
+            return null;
+        return new PlacePhoto(photos.get(position).getPhotoReference(), targetWidth);
+    }
+
+    // What to give to Glide for a photo of a place : the PlacePhoto, or a placeholder if the place has no photo
+    public static Object getGlideModel(PlaceRow placeRow, int position, int targetWidth) {
+        PlacePhoto placePhoto = of(placeRow, position, targetWidth);
+        return placePhoto != null ? placePhoto : PlaceRow.NO_PHOTO_URL;
+    }
+
+    // Photo URLs saved in Firestore by previous versions (urlPhotoFormatter) contain the reference
+    @Nullable
+    public static PlacePhoto fromUrl(@Nullable String urlPhoto, int targetWidth) {
+        if (urlPhoto == null)
+            return null;
+        int start = urlPhoto.indexOf(PHOTO_REFERENCE_PARAM);
+        if (start == -1)
+            return null;
+        start += PHOTO_REFERENCE_PARAM.length();
+        int end = urlPhoto.indexOf('&', start);
+        String photoReference = end == -1 ? urlPhoto.substring(start) : urlPhoto.substring(start, end);
+        return photoReference.isEmpty() ? null : new PlacePhoto(photoReference, targetWidth);
+    }
+
+    // What to give to Glide for a saved photo URL : the PlacePhoto if it's a Places photo, the URL otherwise
+    @Nullable
+    public static Object getGlideModel(@Nullable String urlPhoto, int targetWidth) {
+        PlacePhoto placePhoto = fromUrl(urlPhoto, targetWidth);
+        return placePhoto != null ? placePhoto : urlPhoto;
+    }
+
+    // Smallest bucket at least as wide as the view, or the largest one
+    public static int getWidthBucket(int width) {
+        for (int bucket : WIDTH_BUCKETS)
+            if (width <= bucket)
+                return bucket;
+        return WIDTH_BUCKETS[WIDTH_BUCKETS.length - 1];
+    }
+
+    // --- GETTERS ---
+    public String getPhotoReference() {
+        return photoReference;
+    }
+    public int getTargetWidth() {
+        return targetWidth;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof PlacePhoto))
+            return false;
+        PlacePhoto that = (PlacePhoto) o;
+        return targetWidth == that.targetWidth && photoReference.equals(that.photoReference);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * photoReference.hashCode() + targetWidth;
+    }
+}
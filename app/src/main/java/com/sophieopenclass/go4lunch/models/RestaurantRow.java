@@ -0,0 +1,102 @@
+package com.sophieopenclass.go4lunch.models;
+
+import androidx.annotation.Nullable;
+
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable copy of what a row of the restaurant list displays. The adapter compares these copies on
+ * a background thread, while the PlaceRow they come from can still be updated on the main thread.
+ * The number of workmates is kept by the screen : the PlaceRow is shared by every screen through the caches.
+ */
+public class RestaurantRow {
+    private final String placeId;
+    private final String name;
+    private final String vicinity;
+    @Nullable
+    private final Double rating;
+    // PlacePhoto, or the placeholder URL
+    private final Object photoModel;
+    // Compiled once per PlaceRow and never modified
+    @Nullable
+    private final OpeningSchedule openingSchedule;
+    @Nullable
+    private final Boolean openNow;
+    private final int distance;
+    private final int nbrOfWorkmates;
+
+    public RestaurantRow(PlaceRow placeRow, int nbrOfWorkmates) {
+        this.placeId = placeRow.getPlaceId();
+        this.name = placeRow.getName();
+        this.vicinity = placeRow.getVicinity();
+        this.rating = placeRow.getRating();
+        this.photoModel = PlacePhoto.getGlideModel(placeRow, 0, PlacePhoto.DEFAULT_WIDTH);
+        this.openingSchedule = placeRow.getOpeningSchedule();
+        this.openNow = placeRow.getOpeningHours() != null ? placeRow.getOpeningHours().getOpenNow() : null;
+        this.distance = placeRow.getDistance();
+        this.nbrOfWorkmates = nbrOfWorkmates;
+    }
+
+    // A restaurant missing from nbrOfWorkmates has no workmate
+    public static List<RestaurantRow> of(List<? extends PlaceRow> placeRows, Map<String, Integer> nbrOfWorkmates) {
+        List<RestaurantRow> restaurantRows = new ArrayList<>(placeRows.size());
+        for (PlaceRow placeRow : placeRows) {
+            Integer count = nbrOfWorkmates.get(placeRow.getPlaceId());
+            restaurantRows.add(new RestaurantRow(placeRow, count != null ? count : 0));
+        }
+        return restaurantRows;
+    }
+
+    // --- GETTERS ---
+    public String getPlaceId() {
+        return placeId;
+    }
+    public String getName() {
+        return name;
+    }
+    public String getVicinity() {
+        return vicinity;
+    }
+    @Nullable
+    public Double getRating() {
+        return rating;
+    }
+    public Object getPhotoModel() {
+        return photoModel;
+    }
+    @Nullable
+    public OpeningSchedule getOpeningSchedule() {
+        return openingSchedule;
+    }
+    @Nullable
+    public Boolean getOpenNow() {
+        return openNow;
+    }
+    public int getDistance() {
+        return distance;
+    }
+    public int getNbrOfWorkmates() {
+        return nbrOfWorkmates;
+    }
+
+    // UTILS
+
+    // Everything but the distance and the number of workmates, which can be updated without the photo
+    public boolean hasSameDetails(RestaurantRow other) {
+        return Objects.equals(name, other.name)
+                && Objects.equals(vicinity, other.vicinity)
+                && Objects.equals(rating, other.rating)
+                && Objects.equals(photoModel, other.photoModel)
+                && openingSchedule == other.openingSchedule
+                && Objects.equals(openNow, other.openNow);
+    }
+
+    public boolean hasSameCounts(RestaurantRow other) {
+        return distance == other.distance && nbrOfWorkmates == other.nbrOfWorkmates;
+    }
+}
@@ -0,0 +1,159 @@
+package com.sophieopenclass.go4lunch.models.json_to_java;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import com.sophieopenclass.go4lunch.AppController;
+import com.sophieopenclass.go4lunch.BuildConfig;
+import com.sophieopenclass.go4lunch.models.OpeningSchedule;
+import com.sophieopenclass.go4lunch.utils.GeoDistance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.sophieopenclass.go4lunch.api.PlaceService.API_URL;
+import static com.sophieopenclass.go4lunch.api.PlaceService.PHOTO_URL;
+
+// Slim place model : only the fields displayed in a row of the restaurant list (ROW_FIELDS projection)
+public class PlaceRow {
+    public static final String NO_PHOTO_URL = "https://external-content.duckduckgo.com/iu/?u=https%3A%2F%2Ffishtankclub.com%2Fwp-content%2Fuploads%2F2016%2F09%2FimgUnavailable.png&f=1&nofb=1";
+
+    @SerializedName("geometry")
+    @Expose
+    private Geometry geometry;
+    @SerializedName("name")
+    @Expose
+    private String name;
+    @SerializedName("opening_hours")
+    @Expose
+    private OpeningHours openingHours;
+    @SerializedName("photos")
+    @Expose
+    private List<Photo> photos = null;
+    @SerializedName("place_id")
+    @Expose
+    private String placeId;
+    @SerializedName("rating")
+    @Expose
+    private Double rating;
+    @SerializedName("utc_offset")
+    @Expose
+    private Integer utcOffset;
+    @SerializedName("vicinity")
+    @Expose
+    private String vicinity;
+    // Compiled on first use, not serialized
+    private transient OpeningSchedule openingSchedule;
+    private transient boolean openingScheduleCompiled;
+    // Distance from the origin of the given version, see AppController.getDistanceOriginVersion()
+    private transient int distance;
+    private transient int distanceOriginVersion;
+
+    // --- GETTERS ---
+
+    public Geometry getGeometry() {
+        return geometry;
+    }
+    public String getName() {
+        return name;
+    }
+    public OpeningHours getOpeningHours() {
+        return openingHours;
+    }
+    public List<Photo> getPhotos() {
+        return photos;
+    }
+    public String getPlaceId() {
+        return placeId;
+    }
+    public Double getRating() {
+        return rating;
+    }
+    public Integer getUtcOffset() {
+        return utcOffset;
+    }
+    public String getVicinity() {
+        return vicinity;
+    }
+
+    // Null when the opening hours have no periods
+    public OpeningSchedule getOpeningSchedule() {
+        if (!openingScheduleCompiled) {
+            openingSchedule = OpeningSchedule.compile(openingHours, utcOffset);
+            openingScheduleCompiled = true;
+        }
+        return openingSchedule;
+    }
+
+    // In meters, computed again only once the user has moved far enough for the origin to change
+    public int getDistance() {
+        AppController appController = AppController.getInstance();
+        if (distanceOriginVersion != appController.getDistanceOriginVersion()) {
+            Location location = getGeometry().getLocation();
+            distance = GeoDistance.distanceInMeters(appController.getDistanceOriginLat(),
+                    appController.getDistanceOriginLng(), location.getLat(), location.getLng());
+            distanceOriginVersion = appController.getDistanceOriginVersion();
+        }
+        return distance;
+    }
+
+    // --- SETTERS ---
+    public void setGeometry(Geometry geometry) {
+        this.geometry = geometry;
+    }
+    public void setName(String name) {
+        this.name = name;
+    }
+    public void setOpeningHours(OpeningHours openingHours) {
+        this.openingHours = openingHours;
+        openingScheduleCompiled = false;
+    }
+    public void setPhotos(List<Photo> photos) {
+        this.photos = photos;
+    }
+    public void setPlaceId(String placeId) {
+        this.placeId = placeId;
+    }
+    public void setRating(Double rating) {
+        this.rating = rating;
+    }
+    public void setUtcOffset(Integer utcOffset) {
+        this.utcOffset = utcOffset;
+        openingScheduleCompiled = false;
+    }
+    public void setVicinity(String vicinity) {
+        this.vicinity = vicinity;
+    }
+
+    // UTILS
+    public static String urlPhotoFormatter(PlaceRow placeRow, int position) {
+        if (placeRow.getPhotos() != null) {
+            String photoReference = placeRow.getPhotos().get(position).getPhotoReference();
+            return API_URL + PHOTO_URL + photoReference + "&key=" + BuildConfig.API_KEY;
+        }
+        return NO_PHOTO_URL;
+    }
+
+    // Sorts from nearest to furthest on primitive keys : distance in the high bits, position in the low bits
+    public static void sortByDistance(List<PlaceRow> placeRows) {
+        int size = placeRows.size();
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++)
+            keys[i] = ((long) placeRows.get(i).getDistance() << 32) | i;
+        Arrays.sort(keys);
+        List<PlaceRow> unsorted = new ArrayList<>(placeRows);
+        for (int i = 0; i < size; i++)
+            placeRows.set(i, unsorted.get((int) keys[i]));
+    }
+
+    public static int getNumberOfStarsToDisplay(double rating) {
+        int numberOfStars;
+        if (rating < 3)
+            numberOfStars = 1;
+        else if (rating >= 3 && rating < 4 )
+            numberOfStars = 2;
+        else
+            numberOfStars = 3;
+        return numberOfStars;
+    }
+}
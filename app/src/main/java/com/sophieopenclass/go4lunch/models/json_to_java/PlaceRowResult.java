@@ -0,0 +1,32 @@
+
+package com.sophieopenclass.go4lunch.models.json_to_java;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+// Place Details response for the ROW_FIELDS projection
+public class PlaceRowResult {
+
+    @SerializedName("result")
+    @Expose
+    private PlaceRow placeRow;
+    @SerializedName("status")
+    @Expose
+    private String status;
+
+    public PlaceRow getPlaceRow() {
+        return placeRow;
+    }
+
+    public void setPlaceRow(PlaceRow placeRow) {
+        this.placeRow = placeRow;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+}
@@ -16,13 +16,17 @@ import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.sophieopenclass.go4lunch.R;
 import com.sophieopenclass.go4lunch.view.activities.RestaurantDetailsActivity;
+import com.sophieopenclass.go4lunch.models.DailyLunches;
 import com.sophieopenclass.go4lunch.models.Restaurant;
 import com.sophieopenclass.go4lunch.models.User;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import static android.content.Intent.EXTRA_UID;
 import static com.sophieopenclass.go4lunch.utils.Constants.DATES_AND_RESTAURANTS_FIELD;
+import static com.sophieopenclass.go4lunch.utils.Constants.LUNCH_COLLECTION_NAME;
 import static com.sophieopenclass.go4lunch.utils.Constants.PLACE_ID;
 import static com.sophieopenclass.go4lunch.utils.Constants.PLACE_ID_FIELD;
 import static com.sophieopenclass.go4lunch.utils.Constants.USER_COLLECTION_NAME;
@@ -76,30 +80,45 @@ public class NotificationWorker extends Worker {
             retrieveListOfWorkmatesEatingAtRestaurant();
         }
     }
+    // The lunches/{date} document gives the workmates' names directly, the users are only queried without it
     private void retrieveListOfWorkmatesEatingAtRestaurant() {
-        ArrayList<User> users = new ArrayList<>();
+        FirebaseFirestore.getInstance().collection(LUNCH_COLLECTION_NAME).document(getTodayDateInString()).get()
+                .addOnCompleteListener(task -> {
+                    DailyLunches lunches = task.isSuccessful() && task.getResult() != null && task.getResult().exists()
+                            ? task.getResult().toObject(DailyLunches.class) : null;
+                    if (lunches == null) {
+                        queryWorkmatesEatingAtRestaurant();
+                        return;
+                    }
+                    List<String> workmates = new ArrayList<>();
+                    for (Map.Entry<String, String> participant : lunches.getParticipants(chosenRestaurant.getPlaceId()).entrySet())
+                        if (!participant.getKey().equals(currentUser.getUid()))
+                            workmates.add(participant.getValue());
+                    initNotificationMessage(workmates);
+                });
+    }
+
+    private void queryWorkmatesEatingAtRestaurant() {
         userCollectionRef.whereEqualTo(DATES_AND_RESTAURANTS_FIELD + getTodayDateInString() + PLACE_ID_FIELD,
                 chosenRestaurant.getPlaceId())
                 .get().addOnCompleteListener(task -> {
             if (task.isSuccessful())
                 if (task.getResult() != null) {
-                    users.addAll(task.getResult().toObjects(User.class));
-                    initNotificationMessage(users);
+                    List<String> workmates = new ArrayList<>();
+                    for (User workmate : task.getResult().toObjects(User.class))
+                        if (!workmate.getUid().equals(currentUser.getUid()))
+                            workmates.add(workmate.getUsername());
+                    initNotificationMessage(workmates);
                 }
                 else if (task.getException() != null)
                     Log.e(TAG, "getUsersByPlaceId: " + (task.getException().getMessage()));
         });
     }
 
-    private void initNotificationMessage(ArrayList<User> users) {
+    private void initNotificationMessage(List<String> workmates) {
         String notificationMessage;
         StringBuilder stringBuilderWorkmates = new StringBuilder();
-        if (users.size() != 1) {
-            ArrayList<String> workmates = new ArrayList<>();
-            for (User workmate : users)
-                if (!workmate.getUid().equals(currentUser.getUid()))
-                    workmates.add(workmate.getUsername());
-
+        if (!workmates.isEmpty()) {
             for (int i = 0; i < workmates.size(); i++) {
                 stringBuilderWorkmates.append(workmates.get(i));
                 if (i < workmates.size() - 2)
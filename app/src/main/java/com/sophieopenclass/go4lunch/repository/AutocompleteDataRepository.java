@@ -0,0 +1,167 @@
+package com.sophieopenclass.go4lunch.repository;
+
+import android.util.Log;
+
+import androidx.lifecycle.MutableLiveData;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.tasks.CancellationTokenSource;
+import com.google.android.libraries.places.api.model.AutocompletePrediction;
+import com.google.android.libraries.places.api.model.AutocompleteSessionToken;
+import com.google.android.libraries.places.api.model.Place;
+import com.google.android.libraries.places.api.model.RectangularBounds;
+import com.google.android.libraries.places.api.model.TypeFilter;
+import com.google.android.libraries.places.api.net.FindAutocompletePredictionsRequest;
+import com.google.android.libraries.places.api.net.FindAutocompletePredictionsResponse;
+import com.google.android.libraries.places.api.net.PlacesClient;
+import com.sophieopenclass.go4lunch.models.json_to_java.Location;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRow;
+import com.sophieopenclass.go4lunch.utils.PredictionCache;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Restaurant autocomplete : the places already loaded are searched on the device first, and the
+ * Places API is only queried when they give fewer than MIN_LOCAL_MATCHES results.
+ * The remote restaurants are then added after the local ones. Their predictions are cached, so that
+ * typing again a query, or a longer one, doesn't query the API again.
+ */
+public class AutocompleteDataRepository {
+    private static final String TAG = "AutocompleteRepository";
+    static final int MIN_LOCAL_MATCHES = 3;
+    static final int MAX_LOCAL_MATCHES = 10;
+    // Local matches are searched before being filtered by the bounds
+    private static final int LOCAL_SEARCH_LIMIT = 50;
+    // The API returns at most 5 predictions, a shorter answer is complete
+    private static final int MAX_PREDICTIONS = 5;
+    private static final int PREDICTION_CACHE_SIZE = 200;
+    private final PlacesClient placesClient;
+    private final RestaurantDataRepository restaurantDataSource;
+    private final PredictionCache predictionCache = new PredictionCache(PREDICTION_CACHE_SIZE);
+    private int localOnlySearchCount;
+    private int remoteSearchCount;
+
+    public AutocompleteDataRepository(PlacesClient placesClient, RestaurantDataRepository restaurantDataSource) {
+        this.placesClient = placesClient;
+        this.restaurantDataSource = restaurantDataSource;
+    }
+
+    /**
+     * Delivers the local matches right away (if there are any), then the merged list once the remote
+     * restaurants are loaded. Each value replaces the previous one.
+     */
+    public MutableLiveData<List<PlaceRow>> getAutocompleteRows(String query, RectangularBounds bounds,
+                                                               AutocompleteSessionToken sessionToken, String language) {
+        CancellableLiveData<List<PlaceRow>> rowsData = new CancellableLiveData<>();
+        List<PlaceRow> localRows = searchLocally(query, bounds);
+        if (!localRows.isEmpty())
+            rowsData.setValue(localRows);
+        if (localRows.size() >= MIN_LOCAL_MATCHES) {
+            localOnlySearchCount++;
+            return rowsData;
+        }
+
+        LatLng center = getCenter(bounds);
+        List<String> cachedPlaceIds = predictionCache.get(query, center.latitude, center.longitude);
+        if (cachedPlaceIds != null) {
+            loadRemoteRows(rowsData, cachedPlaceIds, localRows, language);
+            return rowsData;
+        }
+
+        remoteSearchCount++;
+        CancellationTokenSource cancellationSource = new CancellationTokenSource();
+        rowsData.addCancelHook(cancellationSource::cancel);
+        FindAutocompletePredictionsRequest predictionsRequest = FindAutocompletePredictionsRequest.builder()
+                .setTypeFilter(TypeFilter.ESTABLISHMENT)
+                .setSessionToken(sessionToken)
+                .setLocationRestriction(bounds)
+                .setQuery(query)
+                .setCancellationToken(cancellationSource.getToken())
+                .build();
+        placesClient.findAutocompletePredictions(predictionsRequest).addOnCompleteListener(task -> {
+            if (task.isCanceled() || rowsData.isCancelled())
+                return;
+            FindAutocompletePredictionsResponse predictionsResponse = task.isSuccessful() ? task.getResult() : null;
+            if (predictionsResponse == null) {
+                Log.i(TAG, "Prediction fetching task unsuccessful");
+                if (localRows.isEmpty())
+                    rowsData.setValue(localRows);
+                return;
+            }
+            List<AutocompletePrediction> predictions = predictionsResponse.getAutocompletePredictions();
+            List<PredictionCache.Prediction> restaurantPredictions = new ArrayList<>();
+            for (AutocompletePrediction prediction : predictions)
+                if (prediction.getPlaceTypes().contains(Place.Type.RESTAURANT))
+                    restaurantPredictions.add(new PredictionCache.Prediction(prediction.getPlaceId(),
+                            prediction.getFullText(null).toString()));
+            predictionCache.put(query, center.latitude, center.longitude, restaurantPredictions,
+                    predictions.size() < MAX_PREDICTIONS);
+            List<String> placeIds = new ArrayList<>();
+            for (PredictionCache.Prediction prediction : restaurantPredictions)
+                placeIds.add(prediction.getPlaceId());
+            loadRemoteRows(rowsData, placeIds, localRows, language);
+        });
+        return rowsData;
+    }
+
+    private List<PlaceRow> searchLocally(String query, RectangularBounds bounds) {
+        LatLng southwest = bounds.getSouthwest();
+        LatLng northeast = bounds.getNortheast();
+        List<PlaceRow> localRows = new ArrayList<>();
+        for (PlaceRow placeRow : restaurantDataSource.searchIndexedPlaces(query, LOCAL_SEARCH_LIMIT)) {
+            Location location = placeRow.getGeometry() != null ? placeRow.getGeometry().getLocation() : null;
+            if (location == null || location.getLat() == null || location.getLng() == null)
+                continue;
+            if (location.getLat() >= southwest.latitude && location.getLat() <= northeast.latitude
+                    && location.getLng() >= southwest.longitude && location.getLng() <= northeast.longitude)
+                localRows.add(placeRow);
+            if (localRows.size() == MAX_LOCAL_MATCHES)
+                break;
+        }
+        return localRows;
+    }
+
+    // Loads the predicted restaurants that aren't already in the local results, and adds them after those
+    private void loadRemoteRows(CancellableLiveData<List<PlaceRow>> rowsData, List<String> placeIds,
+                                List<PlaceRow> localRows, String language) {
+        Set<String> localPlaceIds = new HashSet<>();
+        for (PlaceRow localRow : localRows)
+            localPlaceIds.add(localRow.getPlaceId());
+        List<String> remotePlaceIds = new ArrayList<>();
+        for (String placeId : placeIds)
+            if (!localPlaceIds.contains(placeId))
+                remotePlaceIds.add(placeId);
+        if (remotePlaceIds.isEmpty()) {
+            if (localRows.isEmpty())
+                rowsData.setValue(localRows);
+            return;
+        }
+        rowsData.addCancelHook(restaurantDataSource.loadPlaceRows(remotePlaceIds, language, batchResult -> {
+            List<PlaceRow> mergedRows = new ArrayList<>(localRows);
+            mergedRows.addAll(batchResult.getResults());
+            rowsData.setValue(mergedRows);
+        }));
+    }
+
+    private static LatLng getCenter(RectangularBounds bounds) {
+        return new LatLng((bounds.getSouthwest().latitude + bounds.getNortheast().latitude) / 2,
+                (bounds.getSouthwest().longitude + bounds.getNortheast().longitude) / 2);
+    }
+
+    // --- METRICS ---
+
+    public int getLocalOnlySearchCount() {
+        return localOnlySearchCount;
+    }
+
+    public int getRemoteSearchCount() {
+        return remoteSearchCount;
+    }
+
+    public PredictionCache getPredictionCache() {
+        return predictionCache;
+    }
+}
@@ -0,0 +1,77 @@
+package com.sophieopenclass.go4lunch.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * LiveData returned by a request that can be abandoned : cancel() runs the hooks registered by
+ * the repository (cancelling the underlying call) and any value set afterwards is ignored.
+ * The request is also cancelled when its last observer is removed, which happens automatically
+ * when the lifecycle owner it was observed with is destroyed.
+ */
+public class CancellableLiveData<T> extends MutableLiveData<T> {
+    private static final AtomicInteger droppedResultCount = new AtomicInteger();
+    private final List<Runnable> cancelHooks = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    public void addCancelHook(Runnable cancelHook) {
+        if (cancelled)
+            cancelHook.run();
+        else
+            cancelHooks.add(cancelHook);
+    }
+
+    public void cancel() {
+        if (cancelled)
+            return;
+        cancelled = true;
+        for (Runnable cancelHook : cancelHooks)
+            cancelHook.run();
+        cancelHooks.clear();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void removeObserver(@NonNull Observer<? super T> observer) {
+        super.removeObserver(observer);
+        if (!hasObservers())
+            cancel();
+    }
+
+    @Override
+    public void setValue(T value) {
+        if (cancelled)
+            droppedResultCount.incrementAndGet();
+        else
+            super.setValue(value);
+    }
+
+    @Override
+    public void postValue(T value) {
+        if (cancelled)
+            droppedResultCount.incrementAndGet();
+        else
+            super.postValue(value);
+    }
+
+    // Repositories keep returning MutableLiveData, this cancels the request if it supports it
+    public static void cancel(@Nullable LiveData<?> liveData) {
+        if (liveData instanceof CancellableLiveData)
+            ((CancellableLiveData<?>) liveData).cancel();
+    }
+
+    // Number of results that arrived after their request was cancelled, since the app started
+    public static int getDroppedResultCount() {
+        return droppedResultCount.get();
+    }
+}
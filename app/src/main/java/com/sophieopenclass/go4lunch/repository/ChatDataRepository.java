@@ -31,7 +31,7 @@ public class ChatDataRepository {
     // --- GET ---
 
     public MutableLiveData<String> getChatId(String currentUserId, String workmateId) {
-        MutableLiveData<String> chatId = new MutableLiveData<>();
+        CancellableLiveData<String> chatId = new CancellableLiveData<>();
         chatCollectionRef.whereEqualTo(PARTICIPANTS_FIELD + currentUserId, true)
                 .whereEqualTo(PARTICIPANTS_FIELD + workmateId, true).get().addOnCompleteListener(task -> {
             if (task.isSuccessful()) {
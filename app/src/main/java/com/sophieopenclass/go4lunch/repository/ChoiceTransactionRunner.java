@@ -0,0 +1,25 @@
+package com.sophieopenclass.go4lunch.repository;
+
+import androidx.annotation.Nullable;
+
+import com.sophieopenclass.go4lunch.models.DailyLunches;
+
+/**
+ * Runs the transaction writing a user's choice for a date : the user's datesAndRestaurants.{date}
+ * field and the lunches/{date} document, in one commit. The write is computed from the document and
+ * the user's name as read by the transaction, and computed again if the document changed before the
+ * commit. Nothing is written if the user doesn't exist.
+ */
+interface ChoiceTransactionRunner {
+
+    interface Choice {
+        ChosenRestaurantWrite apply(DailyLunches lunches, @Nullable String username);
+    }
+
+    interface Callback {
+        // exception is null once written
+        void onComplete(@Nullable Exception exception);
+    }
+
+    void run(String uid, String date, Choice choice, Callback callback);
+}
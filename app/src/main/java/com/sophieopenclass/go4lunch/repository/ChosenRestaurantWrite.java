@@ -0,0 +1,73 @@
+package com.sophieopenclass.go4lunch.repository;
+
+import androidx.annotation.Nullable;
+
+import com.google.firebase.firestore.FieldValue;
+import com.sophieopenclass.go4lunch.models.DailyLunches;
+import com.sophieopenclass.go4lunch.models.Restaurant;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.sophieopenclass.go4lunch.utils.Constants.LUNCH_RESTAURANTS_FIELD;
+
+/**
+ * What is written when a user chooses a restaurant for a date, or cancels (restaurant == null) :
+ * the value of the user's datesAndRestaurants.{date} field, and the lunches/{date} document.
+ * In a transaction the whole document is rewritten from the one read ; offline, only the fields of
+ * the user are merged into it, from the user's previous choice.
+ */
+class ChosenRestaurantWrite {
+    // Restaurant, or FieldValue.delete()
+    private final Object userChoice;
+    // DailyLunches (transaction), or the fields merged into the document (offline batch)
+    private final Object lunches;
+
+    private ChosenRestaurantWrite(Object userChoice, Object lunches) {
+        this.userChoice = userChoice;
+        this.lunches = lunches;
+    }
+
+    // The document read by the transaction isn't modified
+    static ChosenRestaurantWrite inTransaction(DailyLunches lunches, String uid, @Nullable String username,
+                                               @Nullable Restaurant restaurant) {
+        DailyLunches newLunches = new DailyLunches(lunches);
+        if (restaurant != null)
+            newLunches.choose(uid, username, restaurant.getPlaceId());
+        else
+            newLunches.unchoose(uid);
+        return new ChosenRestaurantWrite(getUserChoice(restaurant), newLunches);
+    }
+
+    // To be written with SetOptions.merge() : the user is removed from the previous restaurant, if it's another one
+    static ChosenRestaurantWrite asMerge(@Nullable String previousPlaceId, String uid, @Nullable String username,
+                                         @Nullable Restaurant restaurant) {
+        Map<String, Map<String, Object>> restaurants = new HashMap<>();
+        if (previousPlaceId != null && (restaurant == null || !previousPlaceId.equals(restaurant.getPlaceId())))
+            restaurants.put(previousPlaceId, singletonField(uid, FieldValue.delete()));
+        if (restaurant != null)
+            restaurants.put(restaurant.getPlaceId(), singletonField(uid, username));
+        Map<String, Object> lunches = new HashMap<>();
+        lunches.put(LUNCH_RESTAURANTS_FIELD, restaurants);
+        return new ChosenRestaurantWrite(getUserChoice(restaurant), lunches);
+    }
+
+    private static Object getUserChoice(@Nullable Restaurant restaurant) {
+        return restaurant != null ? restaurant : FieldValue.delete();
+    }
+
+    private static Map<String, Object> singletonField(String key, Object value) {
+        Map<String, Object> field = new HashMap<>();
+        field.put(key, value);
+        return field;
+    }
+
+    // --- GETTERS ---
+    Object getUserChoice() {
+        return userChoice;
+    }
+
+    Object getLunches() {
+        return lunches;
+    }
+}
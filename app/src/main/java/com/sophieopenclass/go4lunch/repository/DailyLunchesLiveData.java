@@ -0,0 +1,78 @@
+package com.sophieopenclass.go4lunch.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.sophieopenclass.go4lunch.models.DailyLunches;
+
+import java.util.Calendar;
+
+import static com.sophieopenclass.go4lunch.utils.DateFormatting.getTodayDateInString;
+
+/**
+ * The lunches/{today} document, kept up to date by a single Firestore snapshot listener.
+ * The listener is only registered while the LiveData has active observers, and moves to the
+ * document of the next day at midnight. The value is null while the document doesn't exist : the
+ * choices made before it existed are only in the users' documents.
+ */
+public class DailyLunchesLiveData extends LiveData<DailyLunches> {
+    private static final String TAG = "DailyLunchesLiveData";
+    private final CollectionReference lunchCollectionRef;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable dateChangeRunnable = this::onDateChanged;
+    private ListenerRegistration registration;
+
+    DailyLunchesLiveData(CollectionReference lunchCollectionRef) {
+        this.lunchCollectionRef = lunchCollectionRef;
+    }
+
+    @Override
+    protected void onActive() {
+        listen();
+    }
+
+    @Override
+    protected void onInactive() {
+        stopListening();
+    }
+
+    private void listen() {
+        registration = lunchCollectionRef.document(getTodayDateInString()).addSnapshotListener((snapshot, exception) -> {
+            if (exception != null) {
+                Log.e(TAG, "onEvent: " + exception.getMessage());
+                return;
+            }
+            setValue(snapshot != null && snapshot.exists() ? snapshot.toObject(DailyLunches.class) : null);
+        });
+        handler.postDelayed(dateChangeRunnable, getMillisUntilMidnight());
+    }
+
+    private void stopListening() {
+        handler.removeCallbacks(dateChangeRunnable);
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    private void onDateChanged() {
+        stopListening();
+        listen();
+    }
+
+    private static long getMillisUntilMidnight() {
+        Calendar midnight = Calendar.getInstance();
+        midnight.add(Calendar.DAY_OF_MONTH, 1);
+        midnight.set(Calendar.HOUR_OF_DAY, 0);
+        midnight.set(Calendar.MINUTE, 0);
+        midnight.set(Calendar.SECOND, 0);
+        midnight.set(Calendar.MILLISECOND, 0);
+        // A little after midnight, so that getTodayDateInString already returns the new day
+        return midnight.getTimeInMillis() - System.currentTimeMillis() + 1000;
+    }
+}
@@ -0,0 +1,43 @@
+package com.sophieopenclass.go4lunch.repository;
+
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.sophieopenclass.go4lunch.models.DailyLunches;
+
+import static com.sophieopenclass.go4lunch.utils.Constants.DATES_AND_RESTAURANTS_FIELD;
+import static com.sophieopenclass.go4lunch.utils.Constants.USERNAME_FIELD;
+
+// Firestore runs the transaction function again (up to 5 times) when a document read changed before the commit
+class FirestoreChoiceTransactionRunner implements ChoiceTransactionRunner {
+    private final CollectionReference userCollectionRef;
+    private final CollectionReference lunchCollectionRef;
+
+    FirestoreChoiceTransactionRunner(CollectionReference userCollectionRef, CollectionReference lunchCollectionRef) {
+        this.userCollectionRef = userCollectionRef;
+        this.lunchCollectionRef = lunchCollectionRef;
+    }
+
+    @Override
+    public void run(String uid, String date, Choice choice, Callback callback) {
+        DocumentReference userRef = userCollectionRef.document(uid);
+        DocumentReference lunchesRef = lunchCollectionRef.document(date);
+        userCollectionRef.getFirestore().runTransaction(transaction -> {
+            DocumentSnapshot lunchesSnapshot = transaction.get(lunchesRef);
+            DocumentSnapshot userSnapshot = transaction.get(userRef);
+            if (!userSnapshot.exists())
+                return null;
+            ChosenRestaurantWrite write = choice.apply(getDailyLunches(lunchesSnapshot),
+                    userSnapshot.getString(USERNAME_FIELD));
+            transaction.update(userRef, DATES_AND_RESTAURANTS_FIELD + date, write.getUserChoice());
+            transaction.set(lunchesRef, write.getLunches());
+            return null;
+        }).addOnCompleteListener(transactionTask ->
+                callback.onComplete(transactionTask.isSuccessful() ? null : transactionTask.getException()));
+    }
+
+    private static DailyLunches getDailyLunches(DocumentSnapshot lunchesSnapshot) {
+        DailyLunches lunches = lunchesSnapshot.exists() ? lunchesSnapshot.toObject(DailyLunches.class) : null;
+        return lunches != null ? lunches : new DailyLunches();
+    }
+}
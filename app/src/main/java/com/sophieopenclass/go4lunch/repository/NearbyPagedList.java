@@ -0,0 +1,143 @@
+package com.sophieopenclass.go4lunch.repository;
+
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.sophieopenclass.go4lunch.models.NearbyPage;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rows of a Nearby Search, page after page. A page is identified by its key : FIRST_PAGE for the
+ * search itself, then the next_page_token that announced it. Every page is loaded once and kept
+ * as long as the list, which is held by the ViewModel : scrolling back and forth or rotating the
+ * device never downloads a page again. A place already listed on a previous page is left out.
+ * Until the first page arrives, the places already known around are displayed as placeholders.
+ * Must be used on the main thread.
+ */
+public class NearbyPagedList {
+    static final String FIRST_PAGE = "";
+    private final PageSource pageSource;
+    private final int prefetchDistance;
+    // Loaded pages in order, by key
+    private final Map<String, NearbyPage> pages = new LinkedHashMap<>();
+    private final Set<String> placeIds = new HashSet<>();
+    private final List<PlaceRow> rows = new ArrayList<>();
+    private final MutableLiveData<List<PlaceRow>> rowsData = new MutableLiveData<>();
+    private final MutableLiveData<Boolean> loadingNextPage = new MutableLiveData<>(false);
+    @Nullable
+    private String nextPageKey;
+    @Nullable
+    private String loadingPageKey;
+    private Runnable cancelFirstPage;
+    private Runnable cancelNextPage;
+    private int duplicateCount;
+
+    interface PageSource {
+        // Returns the action cancelling the load. The first page can be delivered twice (saved copy, then refreshed copy)
+        Runnable loadPage(String pageKey, NearbyPlacesPager.Listener listener);
+
+        // Called as soon as a page key is known, before the list asks for the page
+        void prefetch(String pageKey);
+    }
+
+    // The first page is requested right away
+    NearbyPagedList(PageSource pageSource, List<PlaceRow> placeholders, int prefetchDistance) {
+        this.pageSource = pageSource;
+        this.prefetchDistance = prefetchDistance;
+        if (!placeholders.isEmpty())
+            rowsData.setValue(Collections.unmodifiableList(new ArrayList<>(placeholders)));
+        loadingPageKey = FIRST_PAGE;
+        cancelFirstPage = pageSource.loadPage(FIRST_PAGE, page -> onPageLoaded(FIRST_PAGE, page));
+    }
+
+    // Placeholders first, then every row loaded so far. A value is also set when the first page failed
+    public LiveData<List<PlaceRow>> getRows() {
+        return rowsData;
+    }
+
+    public LiveData<Boolean> isLoadingNextPage() {
+        return loadingNextPage;
+    }
+
+    // To be called with the last visible position : the next page is loaded prefetchDistance rows before the end
+    public void loadAround(int position) {
+        if (loadingPageKey == null && nextPageKey != null && position >= rows.size() - prefetchDistance) {
+            String pageKey = nextPageKey;
+            loadingPageKey = pageKey;
+            loadingNextPage.setValue(true);
+            cancelNextPage = pageSource.loadPage(pageKey, page -> onPageLoaded(pageKey, page));
+        }
+    }
+
+    public void cancel() {
+        if (cancelFirstPage != null)
+            cancelFirstPage.run();
+        cancelNextPage();
+        loadingPageKey = null;
+    }
+
+    private void cancelNextPage() {
+        if (cancelNextPage != null) {
+            cancelNextPage.run();
+            cancelNextPage = null;
+        }
+        loadingNextPage.setValue(false);
+    }
+
+    private void onPageLoaded(String pageKey, @Nullable NearbyPage page) {
+        if (!FIRST_PAGE.equals(pageKey)) {
+            cancelNextPage = null;
+            loadingNextPage.setValue(false);
+            loadingPageKey = null;
+        } else if (!pages.containsKey(FIRST_PAGE)) {
+            loadingPageKey = null;
+        } else if (page != null) {
+            // The refreshed copy of the first page replaces every page loaded after the saved one
+            cancelNextPage();
+            loadingPageKey = null;
+            pages.clear();
+            placeIds.clear();
+            rows.clear();
+        }
+
+        // A next page that failed keeps its key : it's requested again by the next scroll
+        if (page == null) {
+            List<PlaceRow> displayedRows = rowsData.getValue();
+            rowsData.setValue(displayedRows != null ? displayedRows : Collections.emptyList());
+            return;
+        }
+        pages.put(pageKey, page);
+        for (PlaceRow placeRow : page.getPlaceRows()) {
+            if (placeIds.add(placeRow.getPlaceId()))
+                rows.add(placeRow);
+            else
+                duplicateCount++;
+        }
+        // The API sometimes announces a page that was already loaded : the list ends there
+        String nextPageToken = page.getNextPageToken();
+        nextPageKey = nextPageToken != null && !pages.containsKey(nextPageToken) ? nextPageToken : null;
+        if (nextPageKey != null)
+            pageSource.prefetch(nextPageKey);
+        rowsData.setValue(Collections.unmodifiableList(new ArrayList<>(rows)));
+    }
+
+    // --- METRICS ---
+
+    public int getLoadedPageCount() {
+        return pages.size();
+    }
+
+    // Places left out because a previous page already listed them
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+}
@@ -0,0 +1,186 @@
+package com.sophieopenclass.go4lunch.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.sophieopenclass.go4lunch.api.PlaceApi;
+import com.sophieopenclass.go4lunch.models.NearbyPage;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceDetails;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRow;
+import com.sophieopenclass.go4lunch.models.json_to_java.RestaurantsResult;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Downloads the next pages of a Nearby Search ahead of time.
+ * A next_page_token is only accepted by the Places API a short time after it was issued : the page
+ * is requested as soon as the token becomes valid, completed with the row fields of its places and
+ * kept in a buffer until the list asks for it.
+ */
+class NearbyPlacesPager {
+    private static final String TAG = "NearbyPlacesPager";
+    static final long NEXT_PAGE_TOKEN_DELAY = 2000;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int MAX_BUFFERED_PAGES = 3;
+    private static final String STATUS_INVALID_REQUEST = "INVALID_REQUEST";
+    private final PlaceApi placeApi;
+    private final PlaceLoader<?, PlaceRow> rowLoader;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, PendingPage> pages = new LinkedHashMap<String, PendingPage>() {
+        @Override
+        protected boolean removeEldestEntry(Entry<String, PendingPage> eldest) {
+            return size() > MAX_BUFFERED_PAGES;
+        }
+    };
+    private int bufferHitCount;
+    private int cancelledCallCount;
+
+    interface Listener {
+        // page is null if it couldn't be downloaded
+        void onPage(@Nullable NearbyPage page);
+    }
+
+    NearbyPlacesPager(PlaceApi placeApi, PlaceLoader<?, PlaceRow> rowLoader) {
+        this.placeApi = placeApi;
+        this.rowLoader = rowLoader;
+    }
+
+    // Must be called when the token is received, so that the delay before it's valid starts right away
+    void prefetch(String nextPageToken, String language) {
+        if (pages.containsKey(nextPageToken))
+            return;
+        PendingPage page = new PendingPage(nextPageToken, language);
+        pages.put(nextPageToken, page);
+        handler.postDelayed(page.loadRunnable, NEXT_PAGE_TOKEN_DELAY);
+    }
+
+    // Returns the action removing the listener. A prefetched page keeps loading into the buffer until
+    // it's asked for, but once its last listener is removed its calls are cancelled
+    Runnable getPage(String nextPageToken, String language, Listener listener) {
+        prefetch(nextPageToken, language);
+        PendingPage page = pages.get(nextPageToken);
+        if (page.loaded) {
+            pages.remove(nextPageToken);
+            bufferHitCount++;
+            listener.onPage(page.result);
+            return () -> {
+            };
+        }
+        page.listeners.add(listener);
+        return () -> {
+            page.listeners.remove(listener);
+            if (page.listeners.isEmpty() && !page.loaded)
+                page.cancel();
+        };
+    }
+
+    // Number of pages that were already downloaded when the list asked for them
+    int getBufferHitCount() {
+        return bufferHitCount;
+    }
+
+    // Number of detail calls cancelled with their page
+    int getCancelledCallCount() {
+        return cancelledCallCount;
+    }
+
+    private class PendingPage {
+        private final String token;
+        private final String language;
+        private final List<Listener> listeners = new ArrayList<>();
+        private final Runnable loadRunnable = this::load;
+        private Call<RestaurantsResult> call;
+        private PlaceBatch<PlaceRow> batch;
+        private int attempts;
+        private boolean loaded;
+        private boolean cancelled;
+        private NearbyPage result;
+
+        PendingPage(String token, String language) {
+            this.token = token;
+            this.language = language;
+        }
+
+        void load() {
+            attempts++;
+            call = placeApi.getMoreNearbyPlaces(token);
+            call.enqueue(new Callback<RestaurantsResult>() {
+                @Override
+                public void onResponse(@NonNull Call<RestaurantsResult> call,
+                                       @NonNull Response<RestaurantsResult> response) {
+                    if (cancelled)
+                        return;
+                    RestaurantsResult body = response.body();
+                    if (!response.isSuccessful() || body == null)
+                        finish(null);
+                    else if (STATUS_INVALID_REQUEST.equals(body.getStatus())) {
+                        // The token isn't valid yet. Out of attempts it's a failure, not an empty last page
+                        if (attempts < MAX_ATTEMPTS)
+                            handler.postDelayed(loadRunnable, NEXT_PAGE_TOKEN_DELAY);
+                        else
+                            finish(null);
+                    } else if (body.getPlaceDetails() == null)
+                        finish(null);
+                    else
+                        loadRows(body);
+                }
+
+                @Override
+                public void onFailure(@NonNull Call<RestaurantsResult> call, @NonNull Throwable t) {
+                    if (cancelled)
+                        return;
+                    Log.i(TAG, "onFailure: " + t.getMessage());
+                    finish(null);
+                }
+            });
+        }
+
+        private void loadRows(RestaurantsResult restaurantsResult) {
+            List<String> placeIds = new ArrayList<>();
+            for (PlaceDetails placeDetails : restaurantsResult.getPlaceDetails())
+                placeIds.add(placeDetails.getPlaceId());
+            // The API sometimes returns the same token again on the last page
+            String nextPageToken = token.equals(restaurantsResult.getNextPageToken()) ?
+                    null : restaurantsResult.getNextPageToken();
+
+            batch = new PlaceBatch<>(rowLoader, placeIds, language, RestaurantDataRepository.MAX_CONCURRENT_DETAILS_CALLS,
+                    RestaurantDataRepository.DETAILS_BATCH_DEADLINE,
+                    batchResult -> finish(new NearbyPage(batchResult.getResults(), nextPageToken)));
+            batch.start();
+        }
+
+        // Nobody waits for the page anymore : it's dropped, and asking for it again starts over
+        void cancel() {
+            cancelled = true;
+            handler.removeCallbacks(loadRunnable);
+            if (call != null)
+                call.cancel();
+            if (batch != null)
+                cancelledCallCount += batch.cancel();
+            if (pages.get(token) == this)
+                pages.remove(token);
+        }
+
+        private void finish(@Nullable NearbyPage page) {
+            loaded = true;
+            result = page;
+            // A failed page isn't kept, so that asking for it again retries
+            if (!listeners.isEmpty() || page == null)
+                pages.remove(token);
+            for (Listener listener : listeners)
+                listener.onPage(page);
+            listeners.clear();
+        }
+    }
+}
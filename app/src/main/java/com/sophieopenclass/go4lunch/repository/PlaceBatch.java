@@ -0,0 +1,129 @@
+package com.sophieopenclass.go4lunch.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import com.sophieopenclass.go4lunch.models.BatchResult;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRow;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fetches a list of places with at most maxConcurrentCalls calls running at once.
+ * The results keep the order of placeIds, and the batch is delivered once every id has answered
+ * or when the deadline is reached, with an error for each id that failed or didn't answer in time.
+ */
+class PlaceBatch<T extends PlaceRow> {
+    private final PlaceLoader<?, T> loader;
+    private final List<String> placeIds;
+    private final String language;
+    private final int maxConcurrentCalls;
+    private final long deadlineMillis;
+    private final Listener<T> listener;
+    private final List<T> results;
+    private final Map<String, String> errors = new LinkedHashMap<>();
+    private final boolean[] answered;
+    private final Runnable[] cancelActions;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable deadlineRunnable = () -> finish(true);
+    private int nextIndex;
+    private int answeredCount;
+    private boolean finished;
+
+    interface Listener<T> {
+        void onBatchResult(BatchResult<T> batchResult);
+    }
+
+    PlaceBatch(PlaceLoader<?, T> loader, List<String> placeIds, String language, int maxConcurrentCalls,
+               long deadlineMillis, Listener<T> listener) {
+        this.loader = loader;
+        this.placeIds = new ArrayList<>(placeIds);
+        this.language = language;
+        this.maxConcurrentCalls = Math.max(1, maxConcurrentCalls);
+        this.deadlineMillis = deadlineMillis;
+        this.listener = listener;
+        this.results = new ArrayList<>(placeIds.size());
+        for (int i = 0; i < placeIds.size(); i++)
+            results.add(null);
+        this.answered = new boolean[placeIds.size()];
+        this.cancelActions = new Runnable[placeIds.size()];
+    }
+
+    void start() {
+        if (placeIds.isEmpty()) {
+            finish(false);
+            return;
+        }
+        handler.postDelayed(deadlineRunnable, deadlineMillis);
+        for (int i = 0; i < maxConcurrentCalls && nextIndex < placeIds.size(); i++)
+            fetchNext();
+    }
+
+    /**
+     * Stops the batch : the calls still running are cancelled, the remaining ids are not fetched
+     * and the listener is never called.
+     *
+     * @return the number of places that were not delivered
+     */
+    int cancel() {
+        if (finished)
+            return 0;
+        finished = true;
+        handler.removeCallbacks(deadlineRunnable);
+        for (int i = 0; i < nextIndex; i++)
+            if (!answered[i] && cancelActions[i] != null)
+                cancelActions[i].run();
+        return placeIds.size() - answeredCount;
+    }
+
+    private void fetchNext() {
+        int index = nextIndex++;
+        cancelActions[index] = loader.fetch(placeIds.get(index), language, new SingleFlight.Listener<T>() {
+            @Override
+            public void onResult(@Nullable T result) {
+                onAnswer(index, result, null);
+            }
+
+            @Override
+            public void onError(String error) {
+                onAnswer(index, null, error);
+            }
+        });
+    }
+
+    private void onAnswer(int index, @Nullable T result, @Nullable String error) {
+        if (finished || answered[index])
+            return;
+        answered[index] = true;
+        answeredCount++;
+        if (result != null)
+            results.set(index, result);
+        else
+            errors.put(placeIds.get(index), error != null ? error : "unavailable");
+
+        if (answeredCount == placeIds.size())
+            finish(false);
+        else if (nextIndex < placeIds.size())
+            fetchNext();
+    }
+
+    private void finish(boolean deadlineExceeded) {
+        if (finished)
+            return;
+        finished = true;
+        handler.removeCallbacks(deadlineRunnable);
+        List<T> orderedResults = new ArrayList<>();
+        for (int i = 0; i < placeIds.size(); i++) {
+            if (results.get(i) != null)
+                orderedResults.add(results.get(i));
+            else if (!answered[i])
+                errors.put(placeIds.get(i), "deadline exceeded");
+        }
+        listener.onBatchResult(new BatchResult<>(orderedResults, errors, deadlineExceeded));
+    }
+}
@@ -0,0 +1,73 @@
+package com.sophieopenclass.go4lunch.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.sophieopenclass.go4lunch.database.JsonCacheDao;
+import com.sophieopenclass.go4lunch.database.JsonCacheEntry;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Persistent cache of Places responses, stored as JSON in Room.
+ * Database access and (de)serialization run on a single background thread,
+ * results are delivered on the main thread.
+ */
+public class PlaceDiskCache {
+    private static final String TAG = "PlaceDiskCache";
+    // Older entries are never displayed, even without network
+    static final long MAX_AGE = 7 * 24 * 60 * 60 * 1000L;
+    private final JsonCacheDao dao;
+    private final Gson gson;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    interface Callback<T> {
+        // value is null if nothing younger than MAX_AGE is stored for this key
+        void onLoaded(@Nullable T value, long savedAt);
+    }
+
+    public PlaceDiskCache(JsonCacheDao dao, Gson gson) {
+        this.dao = dao;
+        this.gson = gson;
+        executor.execute(() -> dao.deleteSavedBefore(now() - MAX_AGE));
+    }
+
+    <T> void get(String key, Class<T> type, Callback<T> callback) {
+        executor.execute(() -> {
+            T value = null;
+            long savedAt = 0;
+            JsonCacheEntry entry = dao.get(key);
+            if (entry != null && now() - entry.getSavedAt() < MAX_AGE) {
+                try {
+                    value = gson.fromJson(entry.getJson(), type);
+                    savedAt = entry.getSavedAt();
+                } catch (JsonParseException e) {
+                    Log.i(TAG, "get: " + e.getMessage());
+                }
+            }
+            T loadedValue = value;
+            long loadedSavedAt = savedAt;
+            mainHandler.post(() -> callback.onLoaded(loadedValue, loadedSavedAt));
+        });
+    }
+
+    void put(String key, Object value) {
+        long savedAt = now();
+        executor.execute(() -> dao.put(new JsonCacheEntry(key, gson.toJson(value), savedAt)));
+    }
+
+    static boolean isFresh(long savedAt, long ttlMillis) {
+        return now() - savedAt < ttlMillis;
+    }
+
+    private static long now() {
+        return System.currentTimeMillis();
+    }
+}
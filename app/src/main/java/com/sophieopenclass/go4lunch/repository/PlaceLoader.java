@@ -0,0 +1,137 @@
+package com.sophieopenclass.go4lunch.repository;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRow;
+import com.sophieopenclass.go4lunch.utils.TtlLruCache;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Loads one projection of a place (row or full details) : answers from the cache when possible,
+ * otherwise joins the call already in flight for the same placeId and language, or starts it.
+ * On a memory miss the disk cache is read first : a stored place is delivered right away and,
+ * if it's older than the TTL, refreshed in the background for the next callers (stale-while-revalidate).
+ *
+ * @param <R> type of the Place Details response body
+ * @param <T> place model of the projection
+ */
+abstract class PlaceLoader<R, T extends PlaceRow> {
+    private static final String TAG = "PlaceLoader";
+    private static final Runnable NO_OP = () -> {
+    };
+    private final TtlLruCache<String, T> cache;
+    private final long ttlMillis;
+    private final PlaceDiskCache diskCache;
+    private final String diskKeyPrefix;
+    private final Class<T> placeClass;
+    private final SingleFlight<T> flight = new SingleFlight<>();
+
+    PlaceLoader(TtlLruCache<String, T> cache, long ttlMillis, PlaceDiskCache diskCache, String diskKeyPrefix,
+                Class<T> placeClass) {
+        this.cache = cache;
+        this.ttlMillis = ttlMillis;
+        this.diskCache = diskCache;
+        this.diskKeyPrefix = diskKeyPrefix;
+        this.placeClass = placeClass;
+    }
+
+    protected abstract Call<R> createCall(String placeId, String language);
+
+    @Nullable
+    protected abstract T getPlace(R body);
+
+    protected abstract String getStatus(R body);
+
+    // Called with every place read from the disk or the network
+    protected void onPlaceLoaded(T place) {
+    }
+
+    @Nullable
+    protected T getCached(String cacheKey) {
+        return cache.get(cacheKey);
+    }
+
+    static String getCacheKey(String placeId, String language) {
+        return placeId + "|" + language;
+    }
+
+    /**
+     * @return the action to run if the caller isn't interested anymore : the listener won't be called
+     * and the call is cancelled if no other caller is waiting for it
+     */
+    Runnable fetch(String placeId, String language, SingleFlight.Listener<T> listener) {
+        String cacheKey = getCacheKey(placeId, language);
+        T cachedPlace = getCached(cacheKey);
+        if (cachedPlace != null) {
+            listener.onResult(cachedPlace);
+            return NO_OP;
+        }
+        Runnable cancelAction = () -> flight.leave(cacheKey, listener);
+        if (!flight.join(cacheKey, listener))
+            return cancelAction;
+
+        diskCache.get(diskKeyPrefix + cacheKey, placeClass, (storedPlace, savedAt) -> {
+            if (storedPlace != null) {
+                // A stale place is kept in memory until the refresh replaces it
+                cache.put(cacheKey, storedPlace);
+                onPlaceLoaded(storedPlace);
+                flight.complete(cacheKey, storedPlace);
+                if (!PlaceDiskCache.isFresh(savedAt, ttlMillis))
+                    enqueue(placeId, language, cacheKey, false);
+            } else if (flight.isInFlight(cacheKey))
+                enqueue(placeId, language, cacheKey, true);
+        });
+        return cancelAction;
+    }
+
+    // When notifyFlight is false the call only refreshes the caches
+    private void enqueue(String placeId, String language, String cacheKey, boolean notifyFlight) {
+        Call<R> placeCall = createCall(placeId, language);
+        if (notifyFlight)
+            flight.setCancelAction(cacheKey, placeCall::cancel);
+        placeCall.enqueue(new Callback<R>() {
+            @Override
+            public void onResponse(@NonNull Call<R> call, @NonNull Response<R> response) {
+                if (call.isCanceled())
+                    return;
+                R body = response.body();
+                T place = body != null ? getPlace(body) : null;
+                if (place != null) {
+                    cache.put(cacheKey, place);
+                    diskCache.put(diskKeyPrefix + cacheKey, place);
+                    onPlaceLoaded(place);
+                }
+                if (!notifyFlight)
+                    return;
+                if (!response.isSuccessful() || body == null)
+                    flight.fail(cacheKey, "HTTP " + response.code());
+                else if (place == null)
+                    flight.fail(cacheKey, getStatus(body));
+                else
+                    flight.complete(cacheKey, place);
+            }
+
+            @Override
+            public void onFailure(@NonNull Call<R> call, @NonNull Throwable t) {
+                if (call.isCanceled() || !notifyFlight)
+                    return;
+                Log.i(TAG, "onFailure: " + t.getMessage());
+                flight.fail(cacheKey, String.valueOf(t.getMessage()));
+            }
+        });
+    }
+
+    TtlLruCache<String, T> getCache() {
+        return cache;
+    }
+
+    int getSavedCallCount() {
+        return flight.getSavedCallCount();
+    }
+}
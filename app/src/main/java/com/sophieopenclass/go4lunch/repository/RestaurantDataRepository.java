@@ -1,15 +1,21 @@
 package com.sophieopenclass.go4lunch.repository;
 
-import android.util.Log;
-
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
 
-import com.sophieopenclass.go4lunch.BuildConfig;
 import com.sophieopenclass.go4lunch.api.PlaceApi;
+import com.sophieopenclass.go4lunch.models.NearbyPage;
 import com.sophieopenclass.go4lunch.models.json_to_java.PlaceDetails;
 import com.sophieopenclass.go4lunch.models.json_to_java.PlaceDetailsResult;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRow;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRowResult;
 import com.sophieopenclass.go4lunch.models.json_to_java.RestaurantsResult;
+import com.sophieopenclass.go4lunch.utils.GeoHash;
+import com.sophieopenclass.go4lunch.utils.SpatialIndex;
+import com.sophieopenclass.go4lunch.utils.TextIndex;
+import com.sophieopenclass.go4lunch.utils.TtlLruCache;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -18,99 +24,363 @@ import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 
+import static com.sophieopenclass.go4lunch.api.PlaceApi.FULL_FIELDS;
+import static com.sophieopenclass.go4lunch.api.PlaceApi.ROW_FIELDS;
+
 public class RestaurantDataRepository {
-    private static final String TAG = "RestaurantDataRepo";
+    private static final int DETAILS_CACHE_SIZE = 100;
+    private static final int ROW_CACHE_SIZE = 200;
+    private static final long DETAILS_CACHE_TTL = 30 * 60 * 1000;
+    static final int MAX_CONCURRENT_DETAILS_CALLS = 4;
+    static final long DETAILS_BATCH_DEADLINE = 10 * 1000;
+    private static final int NEARBY_TILE_PRECISION = 7;
+    private static final int NEARBY_TILE_CACHE_SIZE = 50;
+    private static final long NEARBY_TILE_CACHE_TTL = 5 * 60 * 1000;
+    private static final String DISK_KEY_DETAILS = "details|";
+    private static final String DISK_KEY_ROW = "row|";
+    private static final String DISK_KEY_NEARBY = "nearby|";
+    private static final double PLACE_INDEX_CELL_SIZE = 250;
+    private static final int PLACE_INDEX_MAX_SIZE = 5000;
     private PlaceApi placeApi;
+    private final PlaceDiskCache diskCache;
+    private final SingleFlight<RestaurantsResult> nearbyPlacesFlight = new SingleFlight<>();
+    private final TtlLruCache<String, RestaurantsResult> nearbyTileCache =
+            new TtlLruCache<>(NEARBY_TILE_CACHE_SIZE, NEARBY_TILE_CACHE_TTL);
+    private final PlaceLoader<PlaceDetailsResult, PlaceDetails> detailsLoader;
+    private final PlaceLoader<PlaceRowResult, PlaceRow> rowLoader;
+    private final NearbyPlacesPager nearbyPlacesPager;
+    // Every place downloaded or read from the disk, to answer "what's near" without a request
+    private final SpatialIndex<PlaceRow> placeIndex = new SpatialIndex<>(PLACE_INDEX_CELL_SIZE, PLACE_INDEX_MAX_SIZE);
+    // Names and addresses of the same places, for the autocomplete
+    private final TextIndex<PlaceRow> placeTextIndex = new TextIndex<>(PLACE_INDEX_MAX_SIZE);
+    private int cancelledPlaceRequestCount;
 
-    public RestaurantDataRepository(PlaceApi placeApi) {
+    public RestaurantDataRepository(PlaceApi placeApi, PlaceDiskCache diskCache) {
         this.placeApi = placeApi;
-    }
+        this.diskCache = diskCache;
+        this.detailsLoader = new PlaceLoader<PlaceDetailsResult, PlaceDetails>(
+                new TtlLruCache<>(DETAILS_CACHE_SIZE, DETAILS_CACHE_TTL), DETAILS_CACHE_TTL, diskCache,
+                DISK_KEY_DETAILS, PlaceDetails.class) {
+            @Override
+            protected Call<PlaceDetailsResult> createCall(String placeId, String language) {
+                return placeApi.getPlaceDetails(placeId, language, FULL_FIELDS);
+            }
 
-    public MutableLiveData<RestaurantsResult> getNearbyPlaces(String location) {
-        MutableLiveData<RestaurantsResult> restaurantsData = new MutableLiveData<>();
-        placeApi.getNearbyPlaces(location).enqueue(new Callback<RestaurantsResult>() {
             @Override
-            public void onResponse(@NonNull Call<RestaurantsResult> call,
-                                   @NonNull Response<RestaurantsResult> response) {
-                if (response.isSuccessful()) {
-                    restaurantsData.setValue(response.body());
-                }
+            protected PlaceDetails getPlace(PlaceDetailsResult body) {
+                return body.getPlaceDetails();
             }
 
             @Override
-            public void onFailure(@NonNull Call<RestaurantsResult> call, @NonNull Throwable t) {
-                restaurantsData.setValue(null);
+            protected String getStatus(PlaceDetailsResult body) {
+                return body.getStatus();
+            }
+
+            @Override
+            protected void onPlaceLoaded(PlaceDetails place) {
+                indexPlace(place);
             }
+        };
+        this.rowLoader = new PlaceLoader<PlaceRowResult, PlaceRow>(
+                new TtlLruCache<>(ROW_CACHE_SIZE, DETAILS_CACHE_TTL), DETAILS_CACHE_TTL, diskCache,
+                DISK_KEY_ROW, PlaceRow.class) {
+            @Override
+            protected Call<PlaceRowResult> createCall(String placeId, String language) {
+                return placeApi.getPlaceRow(placeId, language, ROW_FIELDS);
+            }
+
+            @Override
+            protected PlaceRow getPlace(PlaceRowResult body) {
+                return body.getPlaceRow();
+            }
+
+            @Override
+            protected String getStatus(PlaceRowResult body) {
+                return body.getStatus();
+            }
+
+            @Override
+            protected void onPlaceLoaded(PlaceRow place) {
+                indexPlace(place);
+            }
+
+            // Full details already downloaded also contain every field of a row
+            @Nullable
+            @Override
+            protected PlaceRow getCached(String cacheKey) {
+                PlaceRow placeRow = super.getCached(cacheKey);
+                return placeRow != null ? placeRow : detailsLoader.getCached(cacheKey);
+            }
+        };
+        this.nearbyPlacesPager = new NearbyPlacesPager(placeApi, rowLoader);
+    }
+
+    // Results are cached per geohash tile : the search is made from the center of the tile,
+    // so every location inside an already covered tile is answered without a new request.
+    // A tile saved on disk is delivered first, then replaced by the network result if it was stale :
+    // the LiveData can receive two values.
+    public MutableLiveData<RestaurantsResult> getNearbyPlaces(String location) {
+        CancellableLiveData<RestaurantsResult> restaurantsData = new CancellableLiveData<>();
+        String tile = getNearbyTile(location);
+        if (tile == null) {
+            joinNearbySearch(location, null, restaurantsData, restaurantsData::setValue,
+                    () -> placeApi.getNearbyPlaces(location));
+            return restaurantsData;
+        }
+        RestaurantsResult cachedResult = nearbyTileCache.get(tile);
+        if (cachedResult != null) {
+            restaurantsData.setValue(cachedResult);
+            return restaurantsData;
+        }
+
+        double[] tileCenter = GeoHash.getCenter(tile);
+        String tileLocation = tileCenter[0] + "," + tileCenter[1];
+        diskCache.get(DISK_KEY_NEARBY + tile, RestaurantsResult.class, (storedResult, savedAt) -> {
+            if (restaurantsData.isCancelled())
+                return;
+            boolean stored = storedResult != null;
+            if (stored) {
+                indexPlaces(storedResult.getPlaceDetails());
+                boolean fresh = PlaceDiskCache.isFresh(savedAt, NEARBY_TILE_CACHE_TTL);
+                // The next page token of an old search has expired
+                if (!fresh)
+                    storedResult.setNextPageToken(null);
+                else
+                    nearbyTileCache.put(tile, storedResult);
+                restaurantsData.setValue(storedResult);
+                if (fresh)
+                    return;
+            }
+            // A failed refresh keeps the stored result on screen
+            joinNearbySearch(tile, tile, restaurantsData, result -> {
+                if (result != null || !stored)
+                    restaurantsData.setValue(result);
+            }, () -> placeApi.getNearbyPlaces(tileLocation));
         });
         return restaurantsData;
     }
 
-    public MutableLiveData<PlaceDetails> getPlaceDetails(String placeId, String language) {
-        MutableLiveData<PlaceDetails> placeDetails = new MutableLiveData<>();
-        placeApi.getPlaceDetails(placeId, language).enqueue(new Callback<PlaceDetailsResult>() {
+    // The result is only cached by tile for the first page (tile != null)
+    private void joinNearbySearch(String key, @Nullable String tile, CancellableLiveData<RestaurantsResult> restaurantsData,
+                                  SingleFlight.Listener<RestaurantsResult> listener, NearbyCallFactory callFactory) {
+        restaurantsData.addCancelHook(() -> nearbyPlacesFlight.leave(key, listener));
+        if (!nearbyPlacesFlight.join(key, listener))
+            return;
+
+        Call<RestaurantsResult> nearbyPlacesCall = callFactory.create();
+        nearbyPlacesFlight.setCancelAction(key, nearbyPlacesCall::cancel);
+        nearbyPlacesCall.enqueue(new Callback<RestaurantsResult>() {
             @Override
-            public void onResponse(@NonNull Call<PlaceDetailsResult> call,
-                                   @NonNull Response<PlaceDetailsResult> response) {
+            public void onResponse(@NonNull Call<RestaurantsResult> call,
+                                   @NonNull Response<RestaurantsResult> response) {
+                if (call.isCanceled())
+                    return;
                 if (response.isSuccessful()) {
-                    if (response.body() != null) {
-                        placeDetails.setValue(response.body().getPlaceDetails());
+                    if (response.body() != null)
+                        indexPlaces(response.body().getPlaceDetails());
+                    if (tile != null && response.body() != null) {
+                        nearbyTileCache.put(tile, response.body());
+                        diskCache.put(DISK_KEY_NEARBY + tile, response.body());
                     }
-                }
+                    nearbyPlacesFlight.complete(key, response.body());
+                } else
+                    nearbyPlacesFlight.complete(key, null);
             }
 
             @Override
-            public void onFailure(@NonNull Call<PlaceDetailsResult> call, @NonNull Throwable t) {
-                Log.i(TAG, "onFailure: " + t.getMessage());
+            public void onFailure(@NonNull Call<RestaurantsResult> call, @NonNull Throwable t) {
+                // A cancelled call has no listener left, and a new call may use the same key
+                if (!call.isCanceled())
+                    nearbyPlacesFlight.complete(key, null);
             }
         });
+    }
+
+    private interface NearbyCallFactory {
+        Call<RestaurantsResult> create();
+    }
+
+    @Nullable
+    private static String getNearbyTile(String location) {
+        String[] latLng = location.split(",");
+        if (latLng.length != 2)
+            return null;
+        try {
+            return GeoHash.encode(Double.parseDouble(latLng[0]), Double.parseDouble(latLng[1]), NEARBY_TILE_PRECISION);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public MutableLiveData<PlaceDetails> getPlaceDetails(String placeId, String language) {
+        CancellableLiveData<PlaceDetails> placeDetails = new CancellableLiveData<>();
+        placeDetails.addCancelHook(detailsLoader.fetch(placeId, language, result -> {
+            if (result != null)
+                placeDetails.setValue(result);
+        }));
         return placeDetails;
     }
 
 
+    // Successful details only, in the same order as placeIds, even if some of them failed
     public MutableLiveData<List<PlaceDetails>> getPlaceDetailsList(List<String> placeIds, String language) {
-        MutableLiveData<List<PlaceDetails>> placeDetails = new MutableLiveData<>();
-        List<PlaceDetails> result = new ArrayList<>();
-
-        for (String placeId : placeIds) {
-            placeApi.getPlaceDetails(placeId, language).enqueue(new Callback<PlaceDetailsResult>() {
-                @Override
-                public void onResponse(@NonNull Call<PlaceDetailsResult> call,
-                                       @NonNull Response<PlaceDetailsResult> response) {
-                    if (response.isSuccessful()) {
-                        if (response.body() != null) {
-                            result.add(response.body().getPlaceDetails());
-                            if(result.size() == placeIds.size())
-                                placeDetails.setValue(result);
-                        }
-                    }
-                }
-
-                @Override
-                public void onFailure(@NonNull Call<PlaceDetailsResult> call, @NonNull Throwable t) {
-                    Log.i(TAG, "onFailure: " + t.getMessage());
-                }
-            });
-        }
+        CancellableLiveData<List<PlaceDetails>> placeDetails = new CancellableLiveData<>();
+        startBatch(placeDetails, new PlaceBatch<>(detailsLoader, placeIds, language, MAX_CONCURRENT_DETAILS_CALLS,
+                DETAILS_BATCH_DEADLINE, batchResult -> placeDetails.setValue(batchResult.getResults())));
         return placeDetails;
     }
 
+    // Same as getPlaceDetailsList with only the fields needed to display a row of the list, for the other
+    // repositories : returns the action cancelling the batch
+    Runnable loadPlaceRows(List<String> placeIds, String language, PlaceBatch.Listener<PlaceRow> listener) {
+        PlaceBatch<PlaceRow> batch = new PlaceBatch<>(rowLoader, placeIds, language, MAX_CONCURRENT_DETAILS_CALLS,
+                DETAILS_BATCH_DEADLINE, listener);
+        batch.start();
+        return () -> cancelledPlaceRequestCount += batch.cancel();
+    }
+
+    // Leaving the screen halfway through a batch stops the calls that are still pending
+    private void startBatch(CancellableLiveData<?> batchData, PlaceBatch<?> batch) {
+        batchData.addCancelHook(() -> cancelledPlaceRequestCount += batch.cancel());
+        batch.start();
+    }
+
 
     public MutableLiveData<RestaurantsResult> getMoreNearbyPlaces(String nextPageToken) {
-        MutableLiveData<RestaurantsResult> restaurantsData = new MutableLiveData<>();
-        placeApi.getMoreNearbyPlaces(nextPageToken).enqueue(new Callback<RestaurantsResult>() {
+        CancellableLiveData<RestaurantsResult> restaurantsData = new CancellableLiveData<>();
+        joinNearbySearch(nextPageToken, null, restaurantsData, restaurantsData::setValue,
+                () -> placeApi.getMoreNearbyPlaces(nextPageToken));
+        return restaurantsData;
+    }
+
+    // Pages of the Nearby Search around location, completed with the row fields of their places and sorted
+    // by distance. The next pages are downloaded as soon as their token is valid, see NearbyPlacesPager
+    public NearbyPagedList createNearbyPagedList(String location, List<PlaceRow> placeholders, String language,
+                                                 int prefetchDistance) {
+        return new NearbyPagedList(new NearbyPagedList.PageSource() {
             @Override
-            public void onResponse(@NonNull Call<RestaurantsResult> call,
-                                   @NonNull Response<RestaurantsResult> response) {
-                if (response.isSuccessful()) {
-                    restaurantsData.setValue(response.body());
-                }
+            public Runnable loadPage(String pageKey, NearbyPlacesPager.Listener listener) {
+                if (NearbyPagedList.FIRST_PAGE.equals(pageKey))
+                    return loadFirstNearbyPage(location, language, listener);
+                return nearbyPlacesPager.getPage(pageKey, language, page -> listener.onPage(sortByDistance(page)));
             }
 
             @Override
-            public void onFailure(@NonNull Call<RestaurantsResult> call, @NonNull Throwable t) {
-                restaurantsData.setValue(null);
+            public void prefetch(String pageKey) {
+                nearbyPlacesPager.prefetch(pageKey, language);
             }
-        });
-        return restaurantsData;
+        }, placeholders, prefetchDistance);
+    }
+
+    // Delivered once per value of getNearbyPlaces : a saved copy can be followed by the refreshed one
+    private Runnable loadFirstNearbyPage(String location, String language, NearbyPlacesPager.Listener listener) {
+        MutableLiveData<RestaurantsResult> restaurantsData = getNearbyPlaces(location);
+        List<Runnable> cancelBatch = new ArrayList<>(1);
+        Observer<RestaurantsResult> observer = restaurantsResult -> {
+            for (Runnable cancelAction : cancelBatch)
+                cancelAction.run();
+            cancelBatch.clear();
+            if (restaurantsResult == null || restaurantsResult.getPlaceDetails() == null) {
+                listener.onPage(null);
+                return;
+            }
+            List<String> placeIds = new ArrayList<>();
+            for (PlaceDetails placeDetails : restaurantsResult.getPlaceDetails())
+                placeIds.add(placeDetails.getPlaceId());
+            String nextPageToken = restaurantsResult.getNextPageToken();
+            cancelBatch.add(loadPlaceRows(placeIds, language, batchResult ->
+                    listener.onPage(sortByDistance(new NearbyPage(batchResult.getResults(), nextPageToken)))));
+        };
+        restaurantsData.observeForever(observer);
+        return () -> {
+            // Removing the last observer cancels the search
+            restaurantsData.removeObserver(observer);
+            for (Runnable cancelAction : cancelBatch)
+                cancelAction.run();
+            cancelBatch.clear();
+        };
+    }
+
+    @Nullable
+    private static NearbyPage sortByDistance(@Nullable NearbyPage page) {
+        if (page == null)
+            return null;
+        List<PlaceRow> placeRows = new ArrayList<>(page.getPlaceRows());
+        PlaceRow.sortByDistance(placeRows);
+        return new NearbyPage(placeRows, page.getNextPageToken());
+    }
+
+    // --- LOCAL INDEX ---
+    // Answered from the places already loaded, without any request
+
+    public List<PlaceRow> getIndexedPlacesWithinRadius(double latitude, double longitude, double radiusMeters) {
+        return placeIndex.findWithinRadius(latitude, longitude, radiusMeters);
+    }
+
+    public List<PlaceRow> getIndexedPlacesInBounds(double south, double west, double north, double east) {
+        return placeIndex.findWithinBounds(south, west, north, east);
+    }
+
+    // Best matches of the query among the names and addresses of the places already loaded
+    public List<PlaceRow> searchIndexedPlaces(String query, int limit) {
+        return placeTextIndex.search(query, limit);
+    }
+
+    private void indexPlaces(@Nullable List<? extends PlaceRow> places) {
+        if (places != null)
+            for (PlaceRow place : places)
+                indexPlace(place);
+    }
+
+    private void indexPlace(PlaceRow place) {
+        if (place.getPlaceId() != null && place.getGeometry() != null && place.getGeometry().getLocation() != null
+                && place.getGeometry().getLocation().getLat() != null && place.getGeometry().getLocation().getLng() != null)
+            placeIndex.put(place.getPlaceId(), place.getGeometry().getLocation().getLat(),
+                    place.getGeometry().getLocation().getLng(), place);
+        if (place.getPlaceId() != null && place.getName() != null)
+            placeTextIndex.put(place.getPlaceId(), place, place.getName(), place.getVicinity());
+    }
+
+    // --- METRICS ---
+
+    public TtlLruCache<String, PlaceDetails> getPlaceDetailsCache() {
+        return detailsLoader.getCache();
+    }
+
+    public TtlLruCache<String, PlaceRow> getPlaceRowCache() {
+        return rowLoader.getCache();
+    }
+
+    // Number of Places calls saved because an identical one was already in flight
+    public int getCoalescedCallCount() {
+        return detailsLoader.getSavedCallCount() + rowLoader.getSavedCallCount()
+                + nearbyPlacesFlight.getSavedCallCount();
+    }
+
+    public TtlLruCache<String, RestaurantsResult> getNearbyTileCache() {
+        return nearbyTileCache;
+    }
+
+    public double getNearbyTileHitRatio() {
+        int requestCount = nearbyTileCache.getHitCount() + nearbyTileCache.getMissCount();
+        return requestCount == 0 ? 0 : (double) nearbyTileCache.getHitCount() / requestCount;
+    }
+
+    // Nearby searches answered without a request since the app started, from the tile cache or an identical call
+    public int getNearbyRequestsAvoided() {
+        return nearbyTileCache.getHitCount() + nearbyPlacesFlight.getSavedCallCount();
+    }
+
+    // Places of a batch that were not delivered because the batch was cancelled
+    public int getCancelledPlaceRequestCount() {
+        return cancelledPlaceRequestCount;
+    }
+
+    public int getIndexedPlaceCount() {
+        return placeIndex.size();
+    }
+
+    public int getPrefetchedPageHitCount() {
+        return nearbyPlacesPager.getBufferHitCount();
     }
 }
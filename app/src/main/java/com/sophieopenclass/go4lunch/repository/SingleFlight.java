@@ -0,0 +1,98 @@
+package com.sophieopenclass.go4lunch.repository;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces identical requests : while a call for a given key is in flight, the next callers
+ * asking for the same key are registered as listeners instead of starting their own call,
+ * and they all receive the same result.
+ */
+public class SingleFlight<T> {
+    private final Map<String, List<Listener<T>>> inFlight = new HashMap<>();
+    private final Map<String, Runnable> cancelActions = new HashMap<>();
+    private int savedCallCount;
+
+    public interface Listener<T> {
+        void onResult(@Nullable T result);
+
+        // Called instead of onResult(null) when the call failed
+        default void onError(String error) {
+            onResult(null);
+        }
+    }
+
+    /**
+     * @return true if no call is in flight for this key, in which case the caller has to start it
+     * and report its result with {@link #complete(String, Object)}
+     */
+    public synchronized boolean join(String key, Listener<T> listener) {
+        List<Listener<T>> listeners = inFlight.get(key);
+        if (listeners != null) {
+            listeners.add(listener);
+            savedCallCount++;
+            return false;
+        }
+        listeners = new ArrayList<>();
+        listeners.add(listener);
+        inFlight.put(key, listeners);
+        return true;
+    }
+
+    // Called when the last listener of this key leaves, typically to cancel the network call
+    public synchronized void setCancelAction(String key, Runnable cancelAction) {
+        if (inFlight.containsKey(key))
+            cancelActions.put(key, cancelAction);
+    }
+
+    // The listener won't be notified anymore ; the call is cancelled if nobody else is waiting for it
+    public void leave(String key, Listener<T> listener) {
+        Runnable cancelAction = null;
+        synchronized (this) {
+            List<Listener<T>> listeners = inFlight.get(key);
+            if (listeners == null || !listeners.remove(listener))
+                return;
+            if (listeners.isEmpty()) {
+                inFlight.remove(key);
+                cancelAction = cancelActions.remove(key);
+            }
+        }
+        if (cancelAction != null)
+            cancelAction.run();
+    }
+
+    public void complete(String key, @Nullable T result) {
+        List<Listener<T>> listeners;
+        synchronized (this) {
+            listeners = inFlight.remove(key);
+            cancelActions.remove(key);
+        }
+        if (listeners != null)
+            for (Listener<T> listener : listeners)
+                listener.onResult(result);
+    }
+
+    public void fail(String key, String error) {
+        List<Listener<T>> listeners;
+        synchronized (this) {
+            listeners = inFlight.remove(key);
+            cancelActions.remove(key);
+        }
+        if (listeners != null)
+            for (Listener<T> listener : listeners)
+                listener.onError(error);
+    }
+
+    public synchronized boolean isInFlight(String key) {
+        return inFlight.containsKey(key);
+    }
+
+    // Number of network calls that were not made because an identical one was already running
+    public synchronized int getSavedCallCount() {
+        return savedCallCount;
+    }
+}
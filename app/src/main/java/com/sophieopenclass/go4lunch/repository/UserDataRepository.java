@@ -2,15 +2,26 @@ package com.sophieopenclass.go4lunch.repository;
 
 import android.util.Log;
 
+import androidx.annotation.Nullable;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+import com.sophieopenclass.go4lunch.models.DailyLunches;
 import com.sophieopenclass.go4lunch.models.Restaurant;
 import com.sophieopenclass.go4lunch.models.User;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,10 +34,23 @@ import static com.sophieopenclass.go4lunch.utils.Constants.USERNAME_FIELD;
 import static com.sophieopenclass.go4lunch.utils.DateFormatting.getTodayDateInString;
 
 public class UserDataRepository {
+    // Maximum number of values of a whereIn query
+    private static final int MAX_WHERE_IN_VALUES = 10;
     private CollectionReference userCollectionRef;
+    // One lunches/{date} document per day, updated with the choices of the users
+    private CollectionReference lunchCollectionRef;
+    private ChoiceTransactionRunner choiceTransactionRunner;
 
-    public UserDataRepository(CollectionReference userCollectionRef) {
+    public UserDataRepository(CollectionReference userCollectionRef, CollectionReference lunchCollectionRef) {
+        this(userCollectionRef, lunchCollectionRef,
+                new FirestoreChoiceTransactionRunner(userCollectionRef, lunchCollectionRef));
+    }
+
+    UserDataRepository(CollectionReference userCollectionRef, CollectionReference lunchCollectionRef,
+                       ChoiceTransactionRunner choiceTransactionRunner) {
         this.userCollectionRef = userCollectionRef;
+        this.lunchCollectionRef = lunchCollectionRef;
+        this.choiceTransactionRunner = choiceTransactionRunner;
     }
 
     public Query getUsersEatingAtRestaurantQuery(String placeId) {
@@ -53,8 +77,10 @@ public class UserDataRepository {
         return userToCreate;
     }
 
+    // A Firestore read can't be aborted : once its LiveData is cancelled the result is only dropped.
+    // Writes keep a plain MutableLiveData, they must complete even if the screen is left.
     public MutableLiveData<User> getUser(String uid) {
-        MutableLiveData<User> userData = new MutableLiveData<>();
+        CancellableLiveData<User> userData = new CancellableLiveData<>();
         userCollectionRef.document(uid).get().addOnCompleteListener(task -> {
             if (task.isSuccessful())
                 if (task.getResult() != null)
@@ -66,7 +92,7 @@ public class UserDataRepository {
     }
 
     public MutableLiveData<List<User>> getListUsers() {
-        MutableLiveData<List<User>> users = new MutableLiveData<>();
+        CancellableLiveData<List<User>> users = new CancellableLiveData<>();
         userCollectionRef.get().addOnCompleteListener(task -> {
             if (task.isSuccessful())
                 if (task.getResult() != null)
@@ -79,7 +105,7 @@ public class UserDataRepository {
 
 
     public MutableLiveData<List<User>> getUsersEatingAtRestaurantToday(String placeId, String date) {
-        MutableLiveData<List<User>> users = new MutableLiveData<>();
+        CancellableLiveData<List<User>> users = new CancellableLiveData<>();
         userCollectionRef.whereEqualTo((DATES_AND_RESTAURANTS_FIELD + date + PLACE_ID_FIELD), placeId)
                 .get().addOnCompleteListener(task -> {
             if (task.isSuccessful())
@@ -92,6 +118,64 @@ public class UserDataRepository {
     }
 
 
+    // Live choices of the day : one listener for every restaurant, instead of one query per restaurant.
+    // null while lunches/{today} doesn't exist, see DailyLunchesLiveData
+    public LiveData<DailyLunches> getTodayLunches() {
+        return new DailyLunchesLiveData(lunchCollectionRef);
+    }
+
+    /**
+     * Uids of the users eating at each of the restaurants on this date, read from the lunches/{date}
+     * document. Every placeId is a key of the map, with an empty list when nobody eats there.
+     */
+    public MutableLiveData<Map<String, List<String>>> getUidsEatingAtRestaurants(List<String> placeIds, String date) {
+        CancellableLiveData<Map<String, List<String>>> uidsByPlaceId = new CancellableLiveData<>();
+        lunchCollectionRef.document(date).get().addOnCompleteListener(task -> {
+            DailyLunches lunches = task.isSuccessful() && task.getResult() != null && task.getResult().exists()
+                    ? task.getResult().toObject(DailyLunches.class) : null;
+            if (lunches == null) {
+                queryUidsEatingAtRestaurants(placeIds, date, uidsByPlaceId);
+                return;
+            }
+            Map<String, List<String>> result = new HashMap<>();
+            for (String placeId : placeIds)
+                result.put(placeId, lunches.getUids(placeId));
+            uidsByPlaceId.setValue(result);
+        });
+        return uidsByPlaceId;
+    }
+
+    // Without the lunches document (day without any choice yet, or unavailable) : one whereIn query on
+    // the users per 10 restaurants. Restaurants whose query failed get an empty list.
+    private void queryUidsEatingAtRestaurants(List<String> placeIds, String date,
+                                              MutableLiveData<Map<String, List<String>>> uidsByPlaceId) {
+        String firestorePlaceIdPath = DATES_AND_RESTAURANTS_FIELD + date + PLACE_ID_FIELD;
+        Map<String, List<String>> result = new HashMap<>();
+        for (String placeId : placeIds)
+            result.put(placeId, new ArrayList<>());
+        List<String> distinctPlaceIds = new ArrayList<>(result.keySet());
+        List<Task<QuerySnapshot>> queries = new ArrayList<>();
+        for (int from = 0; from < distinctPlaceIds.size(); from += MAX_WHERE_IN_VALUES) {
+            List<String> chunk = distinctPlaceIds.subList(from, Math.min(from + MAX_WHERE_IN_VALUES, distinctPlaceIds.size()));
+            queries.add(userCollectionRef.whereIn(firestorePlaceIdPath, new ArrayList<>(chunk)).get());
+        }
+        Tasks.whenAllComplete(queries).addOnCompleteListener(allQueries -> {
+            for (Task<QuerySnapshot> query : queries) {
+                if (!query.isSuccessful() || query.getResult() == null) {
+                    if (query.getException() != null)
+                        Log.e(TAG, "getUidsEatingAtRestaurants: " + query.getException().getMessage());
+                    continue;
+                }
+                for (DocumentSnapshot userDocument : query.getResult().getDocuments()) {
+                    List<String> uids = result.get(userDocument.getString(firestorePlaceIdPath));
+                    if (uids != null)
+                        uids.add(userDocument.getId());
+                }
+            }
+            uidsByPlaceId.setValue(result);
+        });
+    }
+
     public void addRestaurantToFavorites(Restaurant restaurant, String userId) {
         userCollectionRef.document(userId).update(FAVORITE_RESTAURANTS_FIELD + restaurant.getPlaceId(), restaurant)
                 .addOnCompleteListener(task -> {
@@ -131,45 +215,79 @@ public class UserDataRepository {
         });
     }
 
-    public void deleteChosenRestaurant(String uid, String date) {
-        Map<String, Object> updates = new HashMap<>();
-        updates.put((DATES_AND_RESTAURANTS_FIELD + date), FieldValue.delete());
-        userCollectionRef.document(uid).get().addOnCompleteListener(uidTask -> {
-            if (uidTask.isSuccessful()) {
-                if (uidTask.getResult() != null)
-                    userCollectionRef.document(uid).update(updates).addOnCompleteListener(deleteRestaurant -> {
-                        if (deleteRestaurant.isSuccessful())
-                            Log.i(TAG, "deleteRestaurant: " + (deleteRestaurant.isSuccessful()));
-                        else if (deleteRestaurant.getException() != null)
-                            Log.e(TAG, "deleteRestaurant: " + (deleteRestaurant.getException().getMessage()));
-                    });
-                else if (uidTask.getException() != null)
-                    Log.e(TAG, " deleteRestaurant: " + uidTask.getException().getMessage());
-            }
-        });
+    // The user's choice and the lunches/{date} document are written in one transaction, so the
+    // document stays consistent when several users choose at the same time
+    public MutableLiveData<Boolean> deleteChosenRestaurant(String uid, String date) {
+        MutableLiveData<Boolean> deleted = new MutableLiveData<>();
+        writeChosenRestaurant(uid, null, date, deleted::setValue);
+        return deleted;
     }
 
+    // Receives null if the choice couldn't be written
     public MutableLiveData<Restaurant> updateChosenRestaurant(String uid, Restaurant restaurant, String date) {
         MutableLiveData<Restaurant> newRestaurant = new MutableLiveData<>();
-        Map<String, Object> updates = new HashMap<>();
-        updates.put((DATES_AND_RESTAURANTS_FIELD + date), restaurant);
-        userCollectionRef.document(uid).get().addOnCompleteListener(uidTask -> {
-            if (uidTask.isSuccessful()) {
-                if (uidTask.getResult() != null)
-                    userCollectionRef.document(uid).update(updates).addOnCompleteListener(addPlaceIdTask -> {
-                        if (addPlaceIdTask.isSuccessful())
-                            newRestaurant.setValue(restaurant);
-                        else if (addPlaceIdTask.getException() != null)
-                            Log.e("com.sophie.REPO", " addPlaceId: " + addPlaceIdTask.getException().getMessage());
-                    });
-                else
-                    newRestaurant.setValue(restaurant);
-            } else if (uidTask.getException() != null)
-                Log.e("com.sophie.REPO", " addPlaceId: " + uidTask.getException().getMessage());
-        });
+        writeChosenRestaurant(uid, restaurant, date, written -> newRestaurant.setValue(written ? restaurant : null));
         return newRestaurant;
     }
 
+    private interface WriteListener {
+        void onComplete(boolean written);
+    }
+
+    // restaurant is null to cancel the choice
+    private void writeChosenRestaurant(String uid, Restaurant restaurant, String date, WriteListener listener) {
+        choiceTransactionRunner.run(uid, date,
+                (lunches, username) -> ChosenRestaurantWrite.inTransaction(lunches, uid, username, restaurant),
+                exception -> {
+                    if (exception == null)
+                        listener.onComplete(true);
+                    else if (isOffline(exception))
+                        writeChoiceInBatch(uid, restaurant, date, listener);
+                    else {
+                        // A contended transaction out of retries mustn't be replaced by a write from a stale
+                        // user document
+                        Log.e(TAG, " writeChosenRestaurant: " + exception.getMessage());
+                        listener.onComplete(false);
+                    }
+                });
+    }
+
+    private static boolean isOffline(@Nullable Exception exception) {
+        return exception instanceof FirebaseFirestoreException
+                && ((FirebaseFirestoreException) exception).getCode() == FirebaseFirestoreException.Code.UNAVAILABLE;
+    }
+
+    // Fallback when the transaction can't run offline : a batch is queued by Firestore until the
+    // network is back. The previous choice comes from the cached user document.
+    private void writeChoiceInBatch(String uid, Restaurant restaurant, String date, WriteListener listener) {
+        DocumentReference userRef = userCollectionRef.document(uid);
+        userRef.get().addOnCompleteListener(uidTask -> {
+            User user = uidTask.isSuccessful() && uidTask.getResult() != null ? uidTask.getResult().toObject(User.class) : null;
+            if (user == null) {
+                if (uidTask.getException() != null)
+                    Log.e(TAG, " writeChoiceInBatch: " + uidTask.getException().getMessage());
+                listener.onComplete(false);
+                return;
+            }
+            Restaurant previousRestaurant = user.getDatesAndRestaurants().get(date);
+            ChosenRestaurantWrite write = ChosenRestaurantWrite.asMerge(
+                    previousRestaurant != null ? previousRestaurant.getPlaceId() : null, uid, user.getUsername(), restaurant);
+
+            WriteBatch batch = userCollectionRef.getFirestore().batch();
+            batch.update(userRef, DATES_AND_RESTAURANTS_FIELD + date, write.getUserChoice());
+            batch.set(lunchCollectionRef.document(date), write.getLunches(), SetOptions.merge());
+            batch.commit().addOnCompleteListener(batchTask -> {
+                if (batchTask.isSuccessful())
+                    listener.onComplete(true);
+                else {
+                    if (batchTask.getException() != null)
+                        Log.e(TAG, " writeChoiceInBatch: " + batchTask.getException().getMessage());
+                    listener.onComplete(false);
+                }
+            });
+        });
+    }
+
     public void deleteRestaurantFromFavorites(String placeId, String userId) {
         userCollectionRef.document(userId).update(FAVORITE_RESTAURANTS_FIELD + placeId, FieldValue.delete())
                 .addOnCompleteListener(task -> {
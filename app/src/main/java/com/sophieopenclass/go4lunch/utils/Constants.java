@@ -20,6 +20,8 @@ public class Constants {
     public static final String DATE_CREATED = "dateCreated";
     public static final String PARTICIPANTS_FIELD = "participants.";
     public static final String USER_SENDER_ID = "userSenderId";
+    public static final String LUNCH_COLLECTION_NAME = "lunches";
+    public static final String LUNCH_RESTAURANTS_FIELD = "restaurants";
 
 
     // findAutocompletePredictions
@@ -0,0 +1,25 @@
+package com.sophieopenclass.go4lunch.utils;
+
+/**
+ * Great-circle distances with the haversine formula, on primitives only.
+ * Same earth radius as android-maps-utils, the results match SphericalUtil.computeDistanceBetween.
+ */
+public class GeoDistance {
+    private static final double EARTH_RADIUS = 6_371_009;
+
+    private GeoDistance() {
+    }
+
+    // Distance in meters
+    public static double haversine(double fromLat, double fromLng, double toLat, double toLng) {
+        double sinHalfDeltaLat = Math.sin(Math.toRadians(toLat - fromLat) / 2);
+        double sinHalfDeltaLng = Math.sin(Math.toRadians(toLng - fromLng) / 2);
+        double h = sinHalfDeltaLat * sinHalfDeltaLat
+                + Math.cos(Math.toRadians(fromLat)) * Math.cos(Math.toRadians(toLat)) * sinHalfDeltaLng * sinHalfDeltaLng;
+        return 2 * EARTH_RADIUS * Math.asin(Math.sqrt(Math.min(1, h)));
+    }
+
+    public static int distanceInMeters(double fromLat, double fromLng, double toLat, double toLng) {
+        return (int) Math.round(haversine(fromLat, fromLng, toLat, toLng));
+    }
+}
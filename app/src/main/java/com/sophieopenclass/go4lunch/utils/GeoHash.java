@@ -0,0 +1,76 @@
+package com.sophieopenclass.go4lunch.utils;
+
+/**
+ * Geohash encoding : splits the world into a grid of tiles named by a base32 string,
+ * each extra character dividing the tile in 32. Precision 7 gives tiles of about 150m x 150m.
+ */
+public class GeoHash {
+    private static final char[] BASE_32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    private static final int[] BITS = {16, 8, 4, 2, 1};
+
+    private GeoHash() {
+    }
+
+    public static String encode(double latitude, double longitude, int precision) {
+        double[] latRange = {-90.0, 90.0};
+        double[] lngRange = {-180.0, 180.0};
+        StringBuilder geoHash = new StringBuilder(precision);
+        boolean isLongitudeBit = true;
+        int bit = 0;
+        int charIndex = 0;
+
+        while (geoHash.length() < precision) {
+            if (isLongitudeBit)
+                charIndex = refine(lngRange, longitude, charIndex, BITS[bit]);
+            else
+                charIndex = refine(latRange, latitude, charIndex, BITS[bit]);
+            isLongitudeBit = !isLongitudeBit;
+            if (bit < 4)
+                bit++;
+            else {
+                geoHash.append(BASE_32[charIndex]);
+                bit = 0;
+                charIndex = 0;
+            }
+        }
+        return geoHash.toString();
+    }
+
+    // Returns {latitude, longitude} of the center of the tile
+    public static double[] getCenter(String geoHash) {
+        double[] latRange = {-90.0, 90.0};
+        double[] lngRange = {-180.0, 180.0};
+        boolean isLongitudeBit = true;
+
+        for (int i = 0; i < geoHash.length(); i++) {
+            int charIndex = indexOf(geoHash.charAt(i));
+            for (int mask : BITS) {
+                double[] range = isLongitudeBit ? lngRange : latRange;
+                double middle = (range[0] + range[1]) / 2;
+                if ((charIndex & mask) != 0)
+                    range[0] = middle;
+                else
+                    range[1] = middle;
+                isLongitudeBit = !isLongitudeBit;
+            }
+        }
+        return new double[]{(latRange[0] + latRange[1]) / 2, (lngRange[0] + lngRange[1]) / 2};
+    }
+
+    private static int refine(double[] range, double value, int charIndex, int mask) {
+        double middle = (range[0] + range[1]) / 2;
+        if (value >= middle) {
+            range[0] = middle;
+            return charIndex | mask;
+        }
+        range[1] = middle;
+        return charIndex;
+    }
+
+    private static int indexOf(char c) {
+        for (int i = 0; i < BASE_32.length; i++)
+            if (BASE_32[i] == c)
+                return i;
+        throw new IllegalArgumentException("Invalid geohash character : " + c);
+    }
+}
@@ -0,0 +1,28 @@
+package com.sophieopenclass.go4lunch.utils;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.Registry;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.module.AppGlideModule;
+import com.sophieopenclass.go4lunch.api.PlacePhotoModelLoader;
+import com.sophieopenclass.go4lunch.models.PlacePhoto;
+
+import java.io.InputStream;
+
+@GlideModule
+public class Go4LunchGlideModule extends AppGlideModule {
+
+    @Override
+    public void registerComponents(@NonNull Context context, @NonNull Glide glide, @NonNull Registry registry) {
+        registry.prepend(PlacePhoto.class, InputStream.class, new PlacePhotoModelLoader.Factory());
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+}
@@ -0,0 +1,216 @@
+package com.sophieopenclass.go4lunch.utils;
+
+import android.content.res.Resources;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.maps.android.clustering.ClusterManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Markers of the map, one per placeId. A new list of restaurants is compared with the markers
+ * already displayed : only the missing ones are added, and the others are updated in place when
+ * their icon, title or position changed. At most maxMarkers are displayed, the least recently
+ * shown ones are removed first. Must be used on the main thread.
+ * In clustered mode the restaurants are items of a ClusterManager instead of markers, and the
+ * clustering runs once per update.
+ */
+public class MarkerRegistry {
+    private final GoogleMap map;
+    private final Resources resources;
+    private final ClusterManager<RestaurantClusterItem> clusterManager;
+    private final RestaurantClusterRenderer clusterRenderer;
+    private final int maxMarkers;
+    // Access order : the least recently shown marker first
+    private final LinkedHashMap<String, Entry> markers = new LinkedHashMap<>(16, 0.75f, true);
+    private int addedCount;
+    private int removedCount;
+    private int updatedCount;
+
+    public MarkerRegistry(GoogleMap map, Resources resources, int maxMarkers) {
+        if (maxMarkers <= 0)
+            throw new IllegalArgumentException("maxMarkers must be > 0");
+        this.map = map;
+        this.resources = resources;
+        this.clusterManager = null;
+        this.clusterRenderer = null;
+        this.maxMarkers = maxMarkers;
+    }
+
+    // Clustered mode, the renderer must be the one of the cluster manager
+    public MarkerRegistry(ClusterManager<RestaurantClusterItem> clusterManager, RestaurantClusterRenderer clusterRenderer,
+                          int maxMarkers) {
+        if (maxMarkers <= 0)
+            throw new IllegalArgumentException("maxMarkers must be > 0");
+        this.map = null;
+        this.resources = null;
+        this.clusterManager = clusterManager;
+        this.clusterRenderer = clusterRenderer;
+        this.maxMarkers = maxMarkers;
+    }
+
+    // Only these restaurants stay on the map (the first maxMarkers ones)
+    public void show(List<MarkerSpec> specs) {
+        Set<String> placeIds = new HashSet<>();
+        for (int i = 0; i < specs.size() && i < maxMarkers; i++)
+            placeIds.add(specs.get(i).placeId);
+        Iterator<Map.Entry<String, Entry>> iterator = markers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> displayed = iterator.next();
+            if (!placeIds.contains(displayed.getKey())) {
+                remove(displayed.getValue());
+                iterator.remove();
+            }
+        }
+        add(specs.size() > maxMarkers ? specs.subList(0, maxMarkers) : specs);
+    }
+
+    // These restaurants are added to the ones already displayed
+    public void add(List<MarkerSpec> specs) {
+        for (MarkerSpec spec : specs) {
+            Entry entry = markers.get(spec.placeId);
+            if (entry == null)
+                addMarker(spec);
+            else
+                updateMarker(entry, spec);
+        }
+        trimToMaxMarkers();
+        if (clusterManager != null)
+            clusterManager.cluster();
+    }
+
+    public void setIcon(String placeId, int drawableId) {
+        Entry entry = markers.get(placeId);
+        if (entry != null && entry.spec.drawableId != drawableId) {
+            updateMarker(entry, new MarkerSpec(placeId, entry.spec.title, entry.spec.position, drawableId));
+        }
+    }
+
+    public List<String> getPlaceIds() {
+        return new ArrayList<>(markers.keySet());
+    }
+
+    public void clear() {
+        for (Entry entry : markers.values())
+            remove(entry);
+        markers.clear();
+        if (clusterManager != null)
+            clusterManager.cluster();
+    }
+
+    private void addMarker(MarkerSpec spec) {
+        Entry entry = new Entry(spec);
+        if (clusterManager != null) {
+            entry.item = new RestaurantClusterItem(spec.placeId, spec.title, spec.position, spec.drawableId);
+            clusterManager.addItem(entry.item);
+        } else {
+            entry.marker = map.addMarker(new MarkerOptions().title(spec.title).position(spec.position)
+                    .icon(VectorConverter.getBitmapFromVector(spec.drawableId, resources)));
+            entry.marker.setTag(spec.placeId);
+        }
+        markers.put(spec.placeId, entry);
+        addedCount++;
+    }
+
+    private void remove(Entry entry) {
+        if (entry.item != null)
+            clusterManager.removeItem(entry.item);
+        else
+            entry.marker.remove();
+        removedCount++;
+    }
+
+    private void updateMarker(Entry entry, MarkerSpec spec) {
+        if (clusterManager != null) {
+            updateItem(entry, spec);
+            return;
+        }
+        boolean updated = false;
+        if (entry.spec.drawableId != spec.drawableId) {
+            entry.marker.setIcon(VectorConverter.getBitmapFromVector(spec.drawableId, resources));
+            updated = true;
+        }
+        if (!spec.position.equals(entry.spec.position)) {
+            entry.marker.setPosition(spec.position);
+            updated = true;
+        }
+        if (spec.title != null && !spec.title.equals(entry.spec.title)) {
+            entry.marker.setTitle(spec.title);
+            updated = true;
+        }
+        entry.spec = spec;
+        if (updated)
+            updatedCount++;
+    }
+
+    // A new icon is applied to the rendered marker or cluster, a moved or renamed restaurant is a new item
+    private void updateItem(Entry entry, MarkerSpec spec) {
+        if (!spec.position.equals(entry.spec.position) || (spec.title != null && !spec.title.equals(entry.spec.title))) {
+            clusterManager.removeItem(entry.item);
+            entry.item = new RestaurantClusterItem(spec.placeId, spec.title, spec.position, spec.drawableId);
+            clusterManager.addItem(entry.item);
+            updatedCount++;
+        } else if (entry.spec.drawableId != spec.drawableId) {
+            entry.item.setDrawableId(spec.drawableId);
+            clusterRenderer.refreshIcon(entry.item);
+            updatedCount++;
+        }
+        entry.spec = spec;
+    }
+
+    private void trimToMaxMarkers() {
+        Iterator<Entry> oldest = markers.values().iterator();
+        while (markers.size() > maxMarkers) {
+            remove(oldest.next());
+            oldest.remove();
+        }
+    }
+
+    // --- METRICS ---
+
+    public int getAddedCount() {
+        return addedCount;
+    }
+
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    public int getUpdatedCount() {
+        return updatedCount;
+    }
+
+    public static class MarkerSpec {
+        final String placeId;
+        final String title;
+        final LatLng position;
+        final int drawableId;
+
+        public MarkerSpec(String placeId, String title, LatLng position, int drawableId) {
+            this.placeId = placeId;
+            this.title = title;
+            this.position = position;
+            this.drawableId = drawableId;
+        }
+    }
+
+    // Either a marker or, in clustered mode, a cluster item
+    private static class Entry {
+        Marker marker;
+        RestaurantClusterItem item;
+        MarkerSpec spec;
+
+        Entry(MarkerSpec spec) {
+            this.spec = spec;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.sophieopenclass.go4lunch.utils;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Autocomplete predictions of the last queries, keyed by the normalized query and a tile of about
+ * 1 km around the center of the search bounds.
+ * When a shorter query of the same tile got a complete answer (less predictions than the API returns
+ * at most), the longer query is answered by filtering it on the device : "pizz" after "piz".
+ * The least recently used query is dropped when maxSize is reached.
+ */
+public class PredictionCache {
+    private static final double TILE_SIZE_DEGREES = 0.01;
+    private final int maxSize;
+    private final LinkedHashMap<String, CachedQuery> queries;
+    private int hitCount;
+    private int prefixHitCount;
+    private int missCount;
+    private int evictionCount;
+
+    public PredictionCache(int maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize must be > 0");
+        this.maxSize = maxSize;
+        this.queries = new LinkedHashMap<String, CachedQuery>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedQuery> eldest) {
+                if (size() <= PredictionCache.this.maxSize)
+                    return false;
+                evictionCount++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return the place ids predicted for this query, or null if it has to be sent to the API
+     */
+    @Nullable
+    public synchronized List<String> get(String query, double latitude, double longitude) {
+        String normalizedQuery = TextIndex.normalize(query);
+        String tile = getTile(latitude, longitude);
+        CachedQuery cachedQuery = queries.get(toKey(tile, normalizedQuery));
+        if (cachedQuery != null) {
+            hitCount++;
+            return cachedQuery.getPlaceIds();
+        }
+
+        String[] queryWords = normalizedQuery.isEmpty() ? new String[0] : normalizedQuery.split(" ");
+        for (int length = normalizedQuery.length() - 1; length > 0; length--) {
+            CachedQuery prefixQuery = queries.get(toKey(tile, normalizedQuery.substring(0, length).trim()));
+            if (prefixQuery == null || !prefixQuery.complete)
+                continue;
+            List<Prediction> filtered = new ArrayList<>();
+            for (Prediction prediction : prefixQuery.predictions)
+                if (prediction.matches(queryWords))
+                    filtered.add(prediction);
+            prefixHitCount++;
+            CachedQuery filteredQuery = new CachedQuery(filtered, true);
+            queries.put(toKey(tile, normalizedQuery), filteredQuery);
+            return filteredQuery.getPlaceIds();
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * @param complete false when the API returned as many predictions as it can, so a longer query
+     *                 may find places missing from this answer
+     */
+    public synchronized void put(String query, double latitude, double longitude, List<Prediction> predictions,
+                                 boolean complete) {
+        queries.put(toKey(getTile(latitude, longitude), TextIndex.normalize(query)),
+                new CachedQuery(new ArrayList<>(predictions), complete));
+    }
+
+    public synchronized void clear() {
+        queries.clear();
+    }
+
+    private static String getTile(double latitude, double longitude) {
+        return (long) Math.floor(latitude / TILE_SIZE_DEGREES) + ":" + (long) Math.floor(longitude / TILE_SIZE_DEGREES);
+    }
+
+    private static String toKey(String tile, String normalizedQuery) {
+        return tile + "|" + normalizedQuery;
+    }
+
+    // --- METRICS ---
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getPrefixHitCount() {
+        return prefixHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    // Exact and prefix hits over all the lookups
+    public synchronized double getHitRate() {
+        int lookupCount = hitCount + prefixHitCount + missCount;
+        return lookupCount == 0 ? 0 : (double) (hitCount + prefixHitCount) / lookupCount;
+    }
+
+    public static class Prediction {
+        private final String placeId;
+        private final String[] words;
+
+        // Text is the full text of the prediction, name and address
+        public Prediction(String placeId, String text) {
+            this.placeId = placeId;
+            String normalizedText = TextIndex.normalize(text);
+            this.words = normalizedText.isEmpty() ? new String[0] : normalizedText.split(" ");
+        }
+
+        public String getPlaceId() {
+            return placeId;
+        }
+
+        // Every word of the query starts a word of the text
+        boolean matches(String[] queryWords) {
+            for (String queryWord : queryWords) {
+                boolean found = false;
+                for (String word : words)
+                    if (word.startsWith(queryWord)) {
+                        found = true;
+                        break;
+                    }
+                if (!found)
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    private static class CachedQuery {
+        final List<Prediction> predictions;
+        final boolean complete;
+
+        CachedQuery(List<Prediction> predictions, boolean complete) {
+            this.predictions = Collections.unmodifiableList(predictions);
+            this.complete = complete;
+        }
+
+        List<String> getPlaceIds() {
+            List<String> placeIds = new ArrayList<>(predictions.size());
+            for (Prediction prediction : predictions)
+                placeIds.add(prediction.getPlaceId());
+            return placeIds;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.sophieopenclass.go4lunch.utils;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.clustering.ClusterItem;
+
+// A restaurant of the clustered map. Only its icon can change, a moved restaurant is a new item.
+public class RestaurantClusterItem implements ClusterItem {
+    private final String placeId;
+    private final String title;
+    private final LatLng position;
+    private int drawableId;
+
+    public RestaurantClusterItem(String placeId, String title, LatLng position, int drawableId) {
+        this.placeId = placeId;
+        this.title = title;
+        this.position = position;
+        this.drawableId = drawableId;
+    }
+
+    @NonNull
+    @Override
+    public LatLng getPosition() {
+        return position;
+    }
+
+    @Override
+    public String getTitle() {
+        return title;
+    }
+
+    @Override
+    public String getSnippet() {
+        return null;
+    }
+
+    public String getPlaceId() {
+        return placeId;
+    }
+
+    public int getDrawableId() {
+        return drawableId;
+    }
+
+    void setDrawableId(int drawableId) {
+        this.drawableId = drawableId;
+    }
+}
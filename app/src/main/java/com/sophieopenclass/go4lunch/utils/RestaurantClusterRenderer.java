@@ -0,0 +1,89 @@
+package com.sophieopenclass.go4lunch.utils;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.maps.android.clustering.Cluster;
+import com.google.maps.android.clustering.ClusterManager;
+import com.google.maps.android.clustering.view.DefaultClusterRenderer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Restaurants drawn with the marker icons of VectorConverter. A cluster is drawn with the joined icon
+ * (green) as soon as one of its restaurants has workmates, and its size as a badge.
+ * All the icons come from VectorConverter's cache, zooming doesn't rasterize anything new.
+ */
+public class RestaurantClusterRenderer extends DefaultClusterRenderer<RestaurantClusterItem> {
+    private final Resources resources;
+    private final int defaultDrawableId;
+    private final int joinedDrawableId;
+    // Cluster markers of the last rendering, to re-color them in place
+    private final Map<Marker, Cluster<RestaurantClusterItem>> clusterMarkers = new HashMap<>();
+
+    public RestaurantClusterRenderer(Context context, GoogleMap map, ClusterManager<RestaurantClusterItem> clusterManager,
+                                     int defaultDrawableId, int joinedDrawableId) {
+        super(context, map, clusterManager);
+        this.resources = context.getResources();
+        this.defaultDrawableId = defaultDrawableId;
+        this.joinedDrawableId = joinedDrawableId;
+    }
+
+    @Override
+    protected void onBeforeClusterItemRendered(RestaurantClusterItem item, MarkerOptions markerOptions) {
+        // The title of the item, without which the info window doesn't open
+        super.onBeforeClusterItemRendered(item, markerOptions);
+        markerOptions.icon(VectorConverter.getBitmapFromVector(item.getDrawableId(), resources));
+    }
+
+    @Override
+    protected void onClusterItemRendered(RestaurantClusterItem item, Marker marker) {
+        marker.setTag(item.getPlaceId());
+    }
+
+    @Override
+    protected void onBeforeClusterRendered(Cluster<RestaurantClusterItem> cluster, MarkerOptions markerOptions) {
+        markerOptions.icon(getClusterIcon(cluster));
+    }
+
+    @Override
+    protected void onClusterRendered(Cluster<RestaurantClusterItem> cluster, Marker marker) {
+        clusterMarkers.put(marker, cluster);
+    }
+
+    @Override
+    public void onClustersChanged(Set<? extends Cluster<RestaurantClusterItem>> clusters) {
+        clusterMarkers.clear();
+        super.onClustersChanged(clusters);
+    }
+
+    // Updates the marker showing this item, alone or in a cluster, after its icon changed
+    void refreshIcon(RestaurantClusterItem item) {
+        Marker marker = getMarker(item);
+        if (marker != null) {
+            marker.setIcon(VectorConverter.getBitmapFromVector(item.getDrawableId(), resources));
+            return;
+        }
+        for (Map.Entry<Marker, Cluster<RestaurantClusterItem>> clusterMarker : clusterMarkers.entrySet())
+            if (clusterMarker.getValue().getItems().contains(item)) {
+                clusterMarker.getKey().setIcon(getClusterIcon(clusterMarker.getValue()));
+                return;
+            }
+    }
+
+    private BitmapDescriptor getClusterIcon(Cluster<RestaurantClusterItem> cluster) {
+        int drawableId = defaultDrawableId;
+        for (RestaurantClusterItem item : cluster.getItems())
+            if (item.getDrawableId() == joinedDrawableId) {
+                drawableId = joinedDrawableId;
+                break;
+            }
+        return VectorConverter.getBitmapFromVector(drawableId, resources, cluster.getSize());
+    }
+}
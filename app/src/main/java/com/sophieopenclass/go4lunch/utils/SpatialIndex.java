@@ -0,0 +1,210 @@
+package com.sophieopenclass.go4lunch.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * In-memory grid index of points identified by an id : the world is cut into square cells of a few
+ * hundred meters and each query only visits the cells around its area.
+ * Putting an id again moves its point. When maxSize is reached the oldest point is dropped.
+ */
+public class SpatialIndex<T> {
+    private static final double METERS_PER_DEGREE = 111_320;
+    private final double cellSizeDegrees;
+    private final int maxSize;
+    private final HashMap<Long, List<Entry<T>>> cells = new HashMap<>();
+    // Insertion order, to drop the oldest point
+    private final LinkedHashMap<String, Entry<T>> entries = new LinkedHashMap<>();
+
+    public SpatialIndex(double cellSizeMeters, int maxSize) {
+        if (cellSizeMeters <= 0 || maxSize <= 0)
+            throw new IllegalArgumentException("cellSizeMeters and maxSize must be > 0");
+        this.cellSizeDegrees = cellSizeMeters / METERS_PER_DEGREE;
+        this.maxSize = maxSize;
+    }
+
+    public synchronized void put(String id, double latitude, double longitude, T value) {
+        Entry<T> previous = entries.remove(id);
+        if (previous != null)
+            removeFromCell(previous);
+        Entry<T> entry = new Entry<>(latitude, longitude, value, toKey(toCell(latitude), toCell(longitude)));
+        entries.put(id, entry);
+        List<Entry<T>> cell = cells.get(entry.cell);
+        if (cell == null) {
+            cell = new ArrayList<>();
+            cells.put(entry.cell, cell);
+        }
+        cell.add(entry);
+
+        if (entries.size() > maxSize) {
+            Iterator<Entry<T>> oldest = entries.values().iterator();
+            removeFromCell(oldest.next());
+            oldest.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Sorted from nearest to furthest
+    public synchronized List<T> findNearest(double latitude, double longitude, int count) {
+        if (count <= 0 || entries.isEmpty())
+            return new ArrayList<>();
+        // Furthest of the best candidates at the head
+        PriorityQueue<Candidate<T>> candidates = new PriorityQueue<>(count,
+                (left, right) -> Double.compare(right.distance, left.distance));
+        int row = toCell(latitude);
+        int col = toCell(longitude);
+        for (int ring = 0; ; ring++) {
+            // Once the square of rings has more cells than the index, checking every point is cheaper
+            if (count >= entries.size() || (long) (2 * ring + 1) * (2 * ring + 1) > 2L * cells.size()) {
+                candidates.clear();
+                for (Entry<T> entry : entries.values())
+                    offer(candidates, count, entry, latitude, longitude);
+                break;
+            }
+            // Every point of the ring is at least (ring - 1) cells away
+            if (candidates.size() == count && candidates.peek().distance < getRingMinDistance(latitude, ring))
+                break;
+            for (int r = row - ring; r <= row + ring; r++) {
+                boolean borderRow = r == row - ring || r == row + ring;
+                int step = borderRow || ring == 0 ? 1 : 2 * ring;
+                for (int c = col - ring; c <= col + ring; c += step) {
+                    List<Entry<T>> cell = cells.get(toKey(r, c));
+                    if (cell != null)
+                        for (Entry<T> entry : cell)
+                            offer(candidates, count, entry, latitude, longitude);
+                }
+            }
+        }
+        List<T> nearest = new ArrayList<>(candidates.size());
+        while (!candidates.isEmpty())
+            nearest.add(candidates.poll().value);
+        Collections.reverse(nearest);
+        return nearest;
+    }
+
+    private static <T> void offer(PriorityQueue<Candidate<T>> candidates, int count, Entry<T> entry,
+                                  double latitude, double longitude) {
+        double distance = GeoDistance.haversine(latitude, longitude, entry.latitude, entry.longitude);
+        if (candidates.size() < count)
+            candidates.add(new Candidate<>(entry.value, distance));
+        else if (distance < candidates.peek().distance) {
+            candidates.poll();
+            candidates.add(new Candidate<>(entry.value, distance));
+        }
+    }
+
+    public synchronized List<T> findWithinRadius(double latitude, double longitude, double radiusMeters) {
+        List<T> found = new ArrayList<>();
+        double latDelta = radiusMeters / METERS_PER_DEGREE;
+        double lngDelta = latDelta / Math.max(0.01, Math.cos(Math.toRadians(Math.min(89, Math.abs(latitude) + latDelta))));
+        int south = toCell(latitude - latDelta);
+        int north = toCell(latitude + latDelta);
+        int west = toCell(longitude - lngDelta);
+        int east = toCell(longitude + lngDelta);
+        if ((long) (north - south + 1) * (east - west + 1) > cells.size()) {
+            for (Entry<T> entry : entries.values())
+                if (GeoDistance.haversine(latitude, longitude, entry.latitude, entry.longitude) <= radiusMeters)
+                    found.add(entry.value);
+            return found;
+        }
+        for (int r = south; r <= north; r++) {
+            for (int c = west; c <= east; c++) {
+                List<Entry<T>> cell = cells.get(toKey(r, c));
+                if (cell == null)
+                    continue;
+                for (Entry<T> entry : cell)
+                    if (GeoDistance.haversine(latitude, longitude, entry.latitude, entry.longitude) <= radiusMeters)
+                        found.add(entry.value);
+            }
+        }
+        return found;
+    }
+
+    // Points inside the viewport, west can be greater than east when it crosses the antimeridian
+    public synchronized List<T> findWithinBounds(double south, double west, double north, double east) {
+        List<T> found = new ArrayList<>();
+        boolean crossesAntimeridian = west > east;
+        long cellCount = (long) (toCell(north) - toCell(south) + 1) * (toCell(east) - toCell(west) + 1);
+        if (crossesAntimeridian || cellCount > cells.size()) {
+            // Large viewport : cheaper to check every point
+            for (Entry<T> entry : entries.values())
+                if (isInBounds(entry, south, west, north, east, crossesAntimeridian))
+                    found.add(entry.value);
+            return found;
+        }
+        for (int r = toCell(south); r <= toCell(north); r++) {
+            for (int c = toCell(west); c <= toCell(east); c++) {
+                List<Entry<T>> cell = cells.get(toKey(r, c));
+                if (cell == null)
+                    continue;
+                for (Entry<T> entry : cell)
+                    if (isInBounds(entry, south, west, north, east, false))
+                        found.add(entry.value);
+            }
+        }
+        return found;
+    }
+
+    private static boolean isInBounds(Entry<?> entry, double south, double west, double north, double east,
+                                      boolean crossesAntimeridian) {
+        if (entry.latitude < south || entry.latitude > north)
+            return false;
+        return crossesAntimeridian ? entry.longitude >= west || entry.longitude <= east
+                : entry.longitude >= west && entry.longitude <= east;
+    }
+
+    private void removeFromCell(Entry<T> entry) {
+        List<Entry<T>> cell = cells.get(entry.cell);
+        cell.remove(entry);
+        if (cell.isEmpty())
+            cells.remove(entry.cell);
+    }
+
+    private double getRingMinDistance(double latitude, int ring) {
+        if (ring <= 1)
+            return 0;
+        // Cells are narrower in meters away from the equator
+        double maxLatitude = Math.min(89, Math.abs(latitude) + ring * cellSizeDegrees);
+        return (ring - 1) * cellSizeDegrees * METERS_PER_DEGREE * Math.cos(Math.toRadians(maxLatitude));
+    }
+
+    private int toCell(double degrees) {
+        return (int) Math.floor(degrees / cellSizeDegrees);
+    }
+
+    private static long toKey(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    private static class Entry<T> {
+        final double latitude;
+        final double longitude;
+        final T value;
+        final long cell;
+
+        Entry(double latitude, double longitude, T value, long cell) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.value = value;
+            this.cell = cell;
+        }
+    }
+
+    private static class Candidate<T> {
+        final T value;
+        final double distance;
+
+        Candidate(T value, double distance) {
+            this.value = value;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.sophieopenclass.go4lunch.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory search over short texts (names, addresses) identified by an id.
+ * Every word of the query has to be the beginning of a word of the texts : "pizz rivo" finds
+ * "Pizzeria di Rivoli". When there are not enough of those, words sharing most of their trigrams
+ * with the query are added, to tolerate typos and matches in the middle of a word.
+ * Case and accents are ignored. When maxSize is reached the oldest text is dropped.
+ */
+public class TextIndex<T> {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final double MIN_TRIGRAM_SIMILARITY = 0.6;
+    // The first field (the name) weighs more than the next ones
+    private static final int FIRST_FIELD_WEIGHT = 2;
+    private static final int START_OF_FIRST_FIELD_BONUS = 3;
+    private final int maxSize;
+    private final LinkedHashMap<String, Entry<T>> entries = new LinkedHashMap<>();
+    // Sorted words, so that all the words starting with a prefix are a sub map
+    private final TreeMap<String, Set<Entry<T>>> words = new TreeMap<>();
+    private final HashMap<String, Set<Entry<T>>> trigrams = new HashMap<>();
+
+    public TextIndex(int maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize must be > 0");
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param fields texts to search, the first one is the most important. Null fields are ignored.
+     */
+    public synchronized void put(String id, T value, String... fields) {
+        Entry<T> previous = entries.remove(id);
+        if (previous != null)
+            unlink(previous);
+        Entry<T> entry = new Entry<>(value, fields);
+        entries.put(id, entry);
+        for (String[] fieldWords : entry.fieldWords)
+            for (String word : fieldWords) {
+                link(words, word, entry);
+                for (String trigram : getTrigrams(word))
+                    link(trigrams, trigram, entry);
+            }
+
+        if (entries.size() > maxSize) {
+            Iterator<Entry<T>> oldest = entries.values().iterator();
+            unlink(oldest.next());
+            oldest.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Best matches first
+    public synchronized List<T> search(String query, int limit) {
+        String[] queryWords = split(normalize(query));
+        if (queryWords.length == 0 || limit <= 0)
+            return new ArrayList<>();
+        String normalizedQuery = join(queryWords);
+
+        // Candidates : texts with a word starting like the longest word of the query
+        String longestWord = queryWords[0];
+        for (String queryWord : queryWords)
+            if (queryWord.length() > longestWord.length())
+                longestWord = queryWord;
+        Map<Entry<T>, Double> scores = new HashMap<>();
+        for (Set<Entry<T>> candidates : words.subMap(longestWord, longestWord + Character.MAX_VALUE).values())
+            for (Entry<T> candidate : candidates)
+                if (!scores.containsKey(candidate)) {
+                    int score = getPrefixScore(candidate, queryWords, normalizedQuery);
+                    if (score > 0)
+                        scores.put(candidate, (double) score);
+                }
+
+        if (scores.size() < limit)
+            addTrigramMatches(queryWords, scores);
+
+        List<Map.Entry<Entry<T>, Double>> ranked = new ArrayList<>(scores.entrySet());
+        Collections.sort(ranked, (left, right) -> {
+            int byScore = Double.compare(right.getValue(), left.getValue());
+            return byScore != 0 ? byScore : left.getKey().firstField.compareTo(right.getKey().firstField);
+        });
+        List<T> results = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < limit; i++)
+            results.add(ranked.get(i).getKey().value);
+        return results;
+    }
+
+    // 0 if a word of the query doesn't start any word of the entry, at least 1 otherwise
+    private static int getPrefixScore(Entry<?> entry, String[] queryWords, String normalizedQuery) {
+        int score = entry.firstField.startsWith(normalizedQuery) ? START_OF_FIRST_FIELD_BONUS : 0;
+        for (String queryWord : queryWords) {
+            int wordScore = 0;
+            for (int field = 0; field < entry.fieldWords.length && wordScore == 0; field++)
+                for (String word : entry.fieldWords[field])
+                    if (word.startsWith(queryWord)) {
+                        wordScore = field == 0 ? FIRST_FIELD_WEIGHT : 1;
+                        break;
+                    }
+            if (wordScore == 0)
+                return 0;
+            score += wordScore;
+        }
+        return score;
+    }
+
+    // Scores below 1, so they come after the prefix matches
+    private void addTrigramMatches(String[] queryWords, Map<Entry<T>, Double> scores) {
+        Set<String> queryTrigrams = new HashSet<>();
+        for (String queryWord : queryWords)
+            queryTrigrams.addAll(getTrigrams(queryWord));
+        if (queryTrigrams.isEmpty())
+            return;
+        Map<Entry<T>, Integer> sharedTrigrams = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            Set<Entry<T>> candidates = trigrams.get(trigram);
+            if (candidates != null)
+                for (Entry<T> candidate : candidates) {
+                    Integer shared = sharedTrigrams.get(candidate);
+                    sharedTrigrams.put(candidate, shared == null ? 1 : shared + 1);
+                }
+        }
+        for (Map.Entry<Entry<T>, Integer> shared : sharedTrigrams.entrySet()) {
+            double similarity = (double) shared.getValue() / queryTrigrams.size();
+            if (similarity >= MIN_TRIGRAM_SIMILARITY && !scores.containsKey(shared.getKey()))
+                scores.put(shared.getKey(), similarity * 0.99);
+        }
+    }
+
+    private void unlink(Entry<T> entry) {
+        for (String[] fieldWords : entry.fieldWords)
+            for (String word : fieldWords) {
+                unlink(words, word, entry);
+                for (String trigram : getTrigrams(word))
+                    unlink(trigrams, trigram, entry);
+            }
+    }
+
+    private static <K, E> void link(Map<K, Set<E>> map, K key, E entry) {
+        Set<E> set = map.get(key);
+        if (set == null) {
+            set = new HashSet<>();
+            map.put(key, set);
+        }
+        set.add(entry);
+    }
+
+    private static <K, E> void unlink(Map<K, Set<E>> map, K key, E entry) {
+        Set<E> set = map.get(key);
+        if (set != null && set.remove(entry) && set.isEmpty())
+            map.remove(key);
+    }
+
+    private static List<String> getTrigrams(String word) {
+        List<String> wordTrigrams = new ArrayList<>();
+        for (int i = 0; i + 3 <= word.length(); i++)
+            wordTrigrams.add(word.substring(i, i + 3));
+        return wordTrigrams;
+    }
+
+    // Lower case, without accents nor punctuation
+    public static String normalize(String text) {
+        if (text == null)
+            return "";
+        String withoutAccents = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(withoutAccents.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    private static String[] split(String normalizedText) {
+        return normalizedText.isEmpty() ? new String[0] : normalizedText.split(" ");
+    }
+
+    private static String join(String[] words) {
+        StringBuilder joined = new StringBuilder();
+        for (String word : words) {
+            if (joined.length() > 0)
+                joined.append(' ');
+            joined.append(word);
+        }
+        return joined.toString();
+    }
+
+    private static class Entry<T> {
+        final T value;
+        final String firstField;
+        final String[][] fieldWords;
+
+        Entry(T value, String[] fields) {
+            this.value = value;
+            this.firstField = fields.length > 0 ? normalize(fields[0]) : "";
+            this.fieldWords = new String[fields.length][];
+            for (int i = 0; i < fields.length; i++)
+                fieldWords[i] = split(normalize(fields[i]));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.sophieopenclass.go4lunch.utils;
+
+import androidx.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded LRU cache where every entry also expires after a fixed time-to-live.
+ * Hits, misses and evictions are counted so the cache efficiency can be checked at runtime.
+ */
+public class TtlLruCache<K, V> {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<K, Entry<V>> map;
+    private int hitCount;
+    private int missCount;
+    private int evictionCount;
+
+    public TtlLruCache(int maxSize, long ttlMillis) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize must be > 0");
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        // accessOrder = true : iteration goes from the least to the most recently used entry
+        this.map = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    @Nullable
+    public synchronized V get(K key) {
+        Entry<V> entry = map.get(key);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        if (isExpired(entry)) {
+            map.remove(key);
+            evictionCount++;
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        if (key == null || value == null)
+            return;
+        map.put(key, new Entry<>(value, now()));
+        trimToSize();
+    }
+
+    public synchronized void remove(K key) {
+        map.remove(key);
+    }
+
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<K, Entry<V>>> iterator = map.entrySet().iterator();
+        while (map.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+    private boolean isExpired(Entry<V> entry) {
+        return now() - entry.createdAt > ttlMillis;
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    // --- METRICS ---
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TtlLruCache[size=" + map.size() + "/" + maxSize + ", hits=" + hitCount
+                + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+    }
+
+    private static class Entry<V> {
+        final V value;
+        final long createdAt;
+
+        Entry(V value, long createdAt) {
+            this.value = value;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -3,8 +3,12 @@ package com.sophieopenclass.go4lunch.utils;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.util.LruCache;
 
 import androidx.core.content.res.ResourcesCompat;
 import androidx.core.graphics.drawable.DrawableCompat;
@@ -12,8 +16,60 @@ import androidx.core.graphics.drawable.DrawableCompat;
 import com.google.android.gms.maps.model.BitmapDescriptor;
 import com.google.android.gms.maps.model.BitmapDescriptorFactory;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Marker icons rasterized from vector drawables. An icon is drawn once per drawable, screen density and
+ * badge, then the same BitmapDescriptor is given to every marker using it.
+ */
 public class VectorConverter {
+    private static final int MAX_CACHED_ICONS = 64;
+    private static final int NO_BADGE = 0;
+    private static final int MAX_BADGE = 99;
+    private static final float BADGE_RADIUS_DP = 8;
+    private static final LruCache<Long, Bitmap> bitmaps = new LruCache<>(MAX_CACHED_ICONS);
+    private static final LruCache<Long, BitmapDescriptor> descriptors = new LruCache<>(MAX_CACHED_ICONS);
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private VectorConverter() {
+    }
+
     public static BitmapDescriptor getBitmapFromVector(int drawableId, Resources resources) {
+        return getBitmapFromVector(drawableId, resources, NO_BADGE);
+    }
+
+    // badge : number drawn in the top right corner of the icon, none if <= 0
+    public static BitmapDescriptor getBitmapFromVector(int drawableId, Resources resources, int badge) {
+        long key = getKey(drawableId, resources, badge);
+        BitmapDescriptor descriptor = descriptors.get(key);
+        if (descriptor == null) {
+            descriptor = BitmapDescriptorFactory.fromBitmap(getBitmap(key, drawableId, resources, badge));
+            descriptors.put(key, descriptor);
+        }
+        return descriptor;
+    }
+
+    // Rasterizes the icons without badge on a background thread, before the first markers need them.
+    // The descriptors themselves need the map to be initialized, they are created on first use.
+    public static void prewarm(Resources resources, int... drawableIds) {
+        executor.execute(() -> {
+            for (int drawableId : drawableIds)
+                getBitmap(getKey(drawableId, resources, NO_BADGE), drawableId, resources, NO_BADGE);
+        });
+    }
+
+    private static Bitmap getBitmap(long key, int drawableId, Resources resources, int badge) {
+        Bitmap bitmap = bitmaps.get(key);
+        if (bitmap == null) {
+            bitmap = rasterize(drawableId, resources, badge);
+            if (bitmap != null)
+                bitmaps.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    private static Bitmap rasterize(int drawableId, Resources resources, int badge) {
         Drawable drawable = ResourcesCompat.getDrawable(resources, drawableId, null);
         Bitmap bitmap = null;
         if (drawable != null) {
@@ -25,7 +81,30 @@ public class VectorConverter {
             Canvas canvas = new Canvas(bitmap);
             drawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
             drawable.draw(canvas);
+            if (badge > NO_BADGE)
+                drawBadge(canvas, resources, badge);
         }
-        return BitmapDescriptorFactory.fromBitmap(bitmap);
+        return bitmap;
+    }
+
+    private static void drawBadge(Canvas canvas, Resources resources, int badge) {
+        float radius = Math.min(BADGE_RADIUS_DP * resources.getDisplayMetrics().density, canvas.getWidth() / 2f);
+        float centerX = canvas.getWidth() - radius;
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(Color.WHITE);
+        canvas.drawCircle(centerX, radius, radius, paint);
+        paint.setColor(Color.BLACK);
+        paint.setTypeface(Typeface.DEFAULT_BOLD);
+        paint.setTextAlign(Paint.Align.CENTER);
+        String text = badge > MAX_BADGE ? MAX_BADGE + "+" : String.valueOf(badge);
+        paint.setTextSize(radius * (text.length() > 2 ? 0.9f : 1.2f));
+        canvas.drawText(text, centerX, radius - (paint.descent() + paint.ascent()) / 2, paint);
+    }
+
+    // Resource ids fill 32 bits, the density and the badge 16 bits each
+    private static long getKey(int drawableId, Resources resources, int badge) {
+        int density = resources.getDisplayMetrics().densityDpi;
+        int clampedBadge = Math.max(NO_BADGE, Math.min(badge, MAX_BADGE + 1));
+        return ((long) drawableId << 32) | ((long) (density & 0xffff) << 16) | clampedBadge;
     }
 }
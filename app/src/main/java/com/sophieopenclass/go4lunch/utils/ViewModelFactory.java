@@ -6,6 +6,7 @@ import androidx.lifecycle.ViewModelProvider;
 
 import com.sophieopenclass.go4lunch.MyViewModel;
 import com.sophieopenclass.go4lunch.repository.AlgoliaDataRepository;
+import com.sophieopenclass.go4lunch.repository.AutocompleteDataRepository;
 import com.sophieopenclass.go4lunch.repository.ChatDataRepository;
 import com.sophieopenclass.go4lunch.repository.RestaurantDataRepository;
 import com.sophieopenclass.go4lunch.repository.UserDataRepository;
@@ -15,13 +16,16 @@ public class ViewModelFactory implements ViewModelProvider.Factory {
     private UserDataRepository userDataSource;
     private ChatDataRepository chatDataSource;
     private AlgoliaDataRepository algoliaDataSource;
+    private AutocompleteDataRepository autocompleteDataSource;
 
     public ViewModelFactory(RestaurantDataRepository restaurantDataSource,
-                            UserDataRepository userDataSource, ChatDataRepository chatDataSource, AlgoliaDataRepository algoliaDataSource) {
+                            UserDataRepository userDataSource, ChatDataRepository chatDataSource, AlgoliaDataRepository algoliaDataSource,
+                            AutocompleteDataRepository autocompleteDataSource) {
         this.restaurantDataSource = restaurantDataSource;
         this.userDataSource = userDataSource;
         this.chatDataSource = chatDataSource;
         this.algoliaDataSource = algoliaDataSource;
+        this.autocompleteDataSource = autocompleteDataSource;
     }
 
     @NonNull
@@ -29,7 +33,8 @@ public class ViewModelFactory implements ViewModelProvider.Factory {
     @SuppressWarnings("unchecked")
     public <T extends ViewModel> T create(@NonNull Class<T> modelClass) {
         if (modelClass.isAssignableFrom(MyViewModel.class)) {
-            return (T) new MyViewModel(restaurantDataSource, userDataSource, chatDataSource, algoliaDataSource);
+            return (T) new MyViewModel(restaurantDataSource, userDataSource, chatDataSource, algoliaDataSource,
+                    autocompleteDataSource);
         }
         throw new IllegalArgumentException("Unknown ViewModel class");
     }
@@ -22,7 +22,6 @@ import com.bumptech.glide.Glide;
 import com.bumptech.glide.request.RequestOptions;
 import com.firebase.ui.auth.AuthUI;
 import com.google.android.libraries.places.api.Places;
-import com.google.android.libraries.places.api.net.PlacesClient;
 import com.google.android.material.navigation.NavigationView;
 import com.sophieopenclass.go4lunch.AppController;
 import com.sophieopenclass.go4lunch.BuildConfig;
@@ -48,7 +47,6 @@ public class MainActivity extends BaseActivity<MyViewModel> implements Navigatio
     private Fragment fragmentMapView;
     private Fragment fragmentRestaurantList;
     private Fragment fragmentWorkmatesList;
-    public PlacesClient placesClient;
     public ActivityMainBinding binding;
 
     @Override
@@ -102,8 +100,9 @@ public class MainActivity extends BaseActivity<MyViewModel> implements Navigatio
     }
 
     private void initPlacesApi() {
-        Places.initialize(getApplicationContext(), BuildConfig.API_KEY);
-        placesClient = Places.createClient(this);
+        // The client itself is created by Injection for AutocompleteDataRepository
+        if (!Places.isInitialized())
+            Places.initialize(getApplicationContext(), BuildConfig.API_KEY);
     }
 
     private void configureDrawerLayout() {
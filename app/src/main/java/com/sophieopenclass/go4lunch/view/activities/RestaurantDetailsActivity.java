@@ -31,6 +31,7 @@ import com.sophieopenclass.go4lunch.R;
 import com.sophieopenclass.go4lunch.base.BaseActivity;
 import com.sophieopenclass.go4lunch.view.adapters.RestaurantWorkmatesListAdapter;
 import com.sophieopenclass.go4lunch.databinding.ActivityRestaurantDetailsBinding;
+import com.sophieopenclass.go4lunch.models.PlacePhoto;
 import com.sophieopenclass.go4lunch.models.Restaurant;
 import com.sophieopenclass.go4lunch.models.User;
 import com.sophieopenclass.go4lunch.models.json_to_java.PlaceDetails;
@@ -115,13 +116,11 @@ public class RestaurantDetailsActivity extends BaseActivity<MyViewModel> impleme
             } else
                 binding.tabLayout.setVisibility(View.GONE);
 
-            List<String> photoUrls = new ArrayList<>();
+            List<Object> photos = new ArrayList<>();
             // Display list of photos
-            for (int i = 0; i < nbrOfPhotos; i++) {
-                String urlPhoto = PlaceDetails.urlPhotoFormatter(placeDetails, i);
-                photoUrls.add(urlPhoto);
-            }
-            viewPager.setAdapter(new SliderAdapter(photoUrls));
+            for (int i = 0; i < nbrOfPhotos; i++)
+                photos.add(PlacePhoto.getGlideModel(placeDetails, i, PlacePhoto.DEFAULT_WIDTH));
+            viewPager.setAdapter(new SliderAdapter(photos));
             new TabLayoutMediator(binding.tabLayout, viewPager, (tab, position) -> { }).attach();
             displayStars();
         } else {
@@ -230,7 +229,12 @@ public class RestaurantDetailsActivity extends BaseActivity<MyViewModel> impleme
             });
         } else {
             binding.addRestaurant.setImageDrawable(getResources().getDrawable(R.drawable.ic_add_black_24dp));
-            viewModel.deleteChosenRestaurant(currentUser.getUid(), getTodayDateInString());
+            viewModel.deleteChosenRestaurant(currentUser.getUid(), getTodayDateInString()).observe(this, deleted -> {
+                if (!deleted) {
+                    Toast.makeText(this, R.string.an_error_happened, Toast.LENGTH_LONG).show();
+                    binding.addRestaurant.setImageDrawable(getResources().getDrawable(R.drawable.ic_check_circle_black_24dp));
+                }
+            });
         }
     }
 
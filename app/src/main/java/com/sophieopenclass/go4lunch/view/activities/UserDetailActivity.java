@@ -15,6 +15,7 @@ import com.sophieopenclass.go4lunch.R;
 import com.sophieopenclass.go4lunch.base.BaseActivity;
 import com.sophieopenclass.go4lunch.view.adapters.PreviousRestaurantsAdapter;
 import com.sophieopenclass.go4lunch.databinding.ActivityUserDetailBinding;
+import com.sophieopenclass.go4lunch.models.PlacePhoto;
 import com.sophieopenclass.go4lunch.models.Restaurant;
 import com.sophieopenclass.go4lunch.models.User;
 
@@ -146,7 +147,7 @@ public class UserDetailActivity extends BaseActivity<MyViewModel> {
             binding.lunchOfTheDay.detailsRestaurantName.setText(selectedRestaurant.getName());
             binding.lunchOfTheDay.detailsRestaurantAddress.setText(selectedRestaurant.getAddress());
             Glide.with(binding.lunchOfTheDay.restaurantPhoto)
-                    .load(selectedRestaurant.getUrlPhoto())
+                    .load(PlacePhoto.getGlideModel(selectedRestaurant.getUrlPhoto(), PlacePhoto.DEFAULT_WIDTH))
                     .apply(RequestOptions.circleCropTransform())
                     .into(binding.lunchOfTheDay.restaurantPhoto);
 
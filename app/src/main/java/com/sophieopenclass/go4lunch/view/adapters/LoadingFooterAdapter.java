@@ -0,0 +1,50 @@
+package com.sophieopenclass.go4lunch.view.adapters;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.sophieopenclass.go4lunch.R;
+
+/**
+ * Progress bar displayed below the restaurants while the next page is loading, joined to the list
+ * with a ConcatAdapter so that the rows never contain a fake item.
+ */
+public class LoadingFooterAdapter extends RecyclerView.Adapter<LoadingFooterAdapter.LoadingViewHolder> {
+    private boolean loading;
+
+    public void setLoading(boolean loading) {
+        if (this.loading == loading)
+            return;
+        this.loading = loading;
+        if (loading)
+            notifyItemInserted(0);
+        else
+            notifyItemRemoved(0);
+    }
+
+    @NonNull
+    @Override
+    public LoadingViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_place_loading, parent, false);
+        return new LoadingViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull LoadingViewHolder holder, int position) {
+    }
+
+    @Override
+    public int getItemCount() {
+        return loading ? 1 : 0;
+    }
+
+    static class LoadingViewHolder extends RecyclerView.ViewHolder {
+        LoadingViewHolder(View itemView) {
+            super(itemView);
+        }
+    }
+}
@@ -12,6 +12,7 @@ import com.bumptech.glide.request.RequestOptions;
 import com.sophieopenclass.go4lunch.R;
 import com.sophieopenclass.go4lunch.databinding.WorkmatesRestaurantPreviewBinding;
 import com.sophieopenclass.go4lunch.listeners.Listeners;
+import com.sophieopenclass.go4lunch.models.PlacePhoto;
 import com.sophieopenclass.go4lunch.models.Restaurant;
 
 import java.util.List;
@@ -75,7 +76,8 @@ public class PreviousRestaurantsAdapter extends RecyclerView.Adapter<PreviousRes
                 binding.dateOfPreviousLunch.setVisibility(View.GONE);
             binding.detailsRestaurantName.setText(restaurant.getName());
             binding.detailsRestaurantAddress.setText(restaurant.getAddress());
-            glide.load(restaurant.getUrlPhoto()).apply(RequestOptions.circleCropTransform())
+            glide.load(PlacePhoto.getGlideModel(restaurant.getUrlPhoto(), PlacePhoto.DEFAULT_WIDTH))
+                    .apply(RequestOptions.circleCropTransform())
                     .into(binding.restaurantPhoto);
 
             if (restaurant.getNumberOfStars() == 1)
@@ -7,6 +7,9 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.RequestManager;
@@ -14,80 +17,81 @@ import com.bumptech.glide.request.RequestOptions;
 import com.sophieopenclass.go4lunch.R;
 import com.sophieopenclass.go4lunch.base.BaseActivity;
 import com.sophieopenclass.go4lunch.databinding.FragmentListViewBinding;
-import com.sophieopenclass.go4lunch.models.json_to_java.Close;
-import com.sophieopenclass.go4lunch.models.json_to_java.OpeningHours;
-import com.sophieopenclass.go4lunch.models.json_to_java.Period;
-import com.sophieopenclass.go4lunch.models.json_to_java.PlaceDetails;
-
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
+import com.sophieopenclass.go4lunch.models.OpeningSchedule;
+import com.sophieopenclass.go4lunch.models.RestaurantRow;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRow;
+
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 
 import static com.sophieopenclass.go4lunch.listeners.Listeners.OnRestaurantClickListener;
-import static com.sophieopenclass.go4lunch.utils.Constants.ONE_HOUR;
-import static com.sophieopenclass.go4lunch.utils.Constants.OPEN_24H;
 
-public class RestaurantListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
-    private List<PlaceDetails> placeDetailsList;
+/**
+ * The rows are immutable snapshots compared by an AsyncListDiffer on a background thread : only the
+ * rows that changed are bound again, and a row whose distance or number of workmates changed keeps
+ * its photo. The progress bar of the next page is a separate LoadingFooterAdapter.
+ */
+public class RestaurantListAdapter extends RecyclerView.Adapter<RestaurantListAdapter.PlaceViewHolder> {
+    private static final Object PAYLOAD_COUNTS = new Object();
+    private static final DiffUtil.ItemCallback<RestaurantRow> DIFF_CALLBACK = new DiffUtil.ItemCallback<RestaurantRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull RestaurantRow oldRow, @NonNull RestaurantRow newRow) {
+            return oldRow.getPlaceId().equals(newRow.getPlaceId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull RestaurantRow oldRow, @NonNull RestaurantRow newRow) {
+            return oldRow.hasSameDetails(newRow) && oldRow.hasSameCounts(newRow);
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(@NonNull RestaurantRow oldRow, @NonNull RestaurantRow newRow) {
+            return oldRow.hasSameDetails(newRow) ? PAYLOAD_COUNTS : null;
+        }
+    };
+    private final AsyncListDiffer<RestaurantRow> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
     private OnRestaurantClickListener onRestaurantClickListener;
     private RequestManager glide;
-    private static final int VIEW_TYPE_ITEM = 0;
 
-    public RestaurantListAdapter(List<PlaceDetails> placeDetailsList,
-                                 OnRestaurantClickListener onRestaurantClickListener, RequestManager glide) {
-        this.placeDetailsList = placeDetailsList;
+    public RestaurantListAdapter(OnRestaurantClickListener onRestaurantClickListener, RequestManager glide) {
         this.onRestaurantClickListener = onRestaurantClickListener;
         this.glide = glide;
     }
 
     @NonNull
     @Override
-    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        if (viewType == VIEW_TYPE_ITEM) {
-            View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.fragment_list_view,
-                    parent, false);
-            return new PlaceViewHolder(view, onRestaurantClickListener);
-        } else {
-            View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_place_loading, parent, false);
-            return new LoadingViewHolder(view);
-        }
+    public PlaceViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.fragment_list_view,
+                parent, false);
+        return new PlaceViewHolder(view, onRestaurantClickListener);
     }
 
     @Override
-    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
-        if (holder instanceof PlaceViewHolder)
-            ((PlaceViewHolder) holder).bind(placeDetailsList.get(position));
+    public void onBindViewHolder(@NonNull PlaceViewHolder holder, int position) {
+        holder.bind(differ.getCurrentList().get(position));
     }
 
     @Override
-    public int getItemCount() {
-        return placeDetailsList == null ? 0 : placeDetailsList.size();
+    public void onBindViewHolder(@NonNull PlaceViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.contains(PAYLOAD_COUNTS))
+            holder.bindCounts(differ.getCurrentList().get(position));
+        else
+            onBindViewHolder(holder, position);
     }
 
     @Override
-    public int getItemViewType(int position) {
-        int VIEW_TYPE_LOADING = 1;
-        return placeDetailsList.get(position) == null ? VIEW_TYPE_LOADING : VIEW_TYPE_ITEM;
+    public int getItemCount() {
+        return differ.getCurrentList().size();
     }
 
     public void clearList(){
-        placeDetailsList.clear();
-        notifyDataSetChanged();
+        differ.submitList(null);
     }
 
-    public void updateList(List<PlaceDetails> placeDetailsList) {
-        this.placeDetailsList = placeDetailsList;
-        notifyDataSetChanged();
-    }
-
-    // Progress bar
-    static class LoadingViewHolder extends RecyclerView.ViewHolder {
-        LoadingViewHolder(View itemView) {
-            super(itemView);
-        }
+    // The list and the counts are copied into snapshots, they can be modified afterwards
+    public void updateList(List<? extends PlaceRow> placeDetailsList, Map<String, Integer> nbrOfWorkmates) {
+        differ.submitList(RestaurantRow.of(placeDetailsList, nbrOfWorkmates));
     }
 
     class PlaceViewHolder extends RecyclerView.ViewHolder {
@@ -101,42 +105,41 @@ public class RestaurantListAdapter extends RecyclerView.Adapter<RecyclerView.Vie
             this.onRestaurantClickListener = onRestaurantClickListener;
             binding = FragmentListViewBinding.bind(itemView);
             itemView.setOnClickListener(v -> onRestaurantClickListener
-                    .onRestaurantClick(placeDetailsList.get(getBindingAdapterPosition()).getPlaceId()));
+                    .onRestaurantClick(differ.getCurrentList().get(getBindingAdapterPosition()).getPlaceId()));
 
             context = (BaseActivity) itemView.getContext();
             res = context.getResources();
         }
 
-        void bind(PlaceDetails placeDetails) {
+        void bind(RestaurantRow placeDetails) {
             binding.oneStar.setVisibility(View.GONE);
             binding.twoStars.setVisibility(View.GONE);
             binding.threeStars.setVisibility(View.GONE);
             binding.restaurantName.setText(placeDetails.getName());
             binding.restaurantAddress.setText(placeDetails.getVicinity());
 
-            if (placeDetails.getOpeningHours() != null) {
-                if (Boolean.TRUE.equals(placeDetails.getOpeningHours().getOpenNow())) {
-                    binding.openingHours.setTextColor(res.getColor(R.color.quantum_googgreen));
-                    displayOpeningHours(placeDetails);
-                }
-                else {
-                    binding.openingHours.setTextColor(res.getColor(R.color.quantum_googred));
-                    displayClosed(placeDetails);
-                }
+            OpeningSchedule openingSchedule = placeDetails.getOpeningSchedule();
+            if (openingSchedule != null)
+                displayOpeningSchedule(openingSchedule);
+            else if (placeDetails.getOpenNow() != null) {
+                // No periods : only the status returned with the place is known
+                boolean openNow = placeDetails.getOpenNow();
+                binding.openingHours.setTextColor(res.getColor(openNow ? R.color.quantum_googgreen : R.color.quantum_googred));
+                binding.openingHours.setText(openNow ? R.string.open : R.string.close);
             } else {
                 binding.openingHours.setTextColor(res.getColor(R.color.quantum_grey));
                 binding.openingHours.setText(R.string.opening_hours_unavailable);
             }
 
-            String urlPhoto = PlaceDetails.urlPhotoFormatter(placeDetails, 0);
-            glide.load(urlPhoto).apply(RequestOptions.centerCropTransform())
+            // The size of the thumbnail is picked by PlacePhotoModelLoader from the view size
+            glide.load(placeDetails.getPhotoModel())
+                    .apply(RequestOptions.centerCropTransform())
                     .into(binding.restaurantPhoto);
 
-            binding.restaurantDistance.setText(res.getString(R.string.distance, placeDetails.getDistance()));
-            binding.nbrOfWorkmates.setText(res.getString(R.string.nbr_of_workmates, placeDetails.getNbrOfWorkmates()));
+            bindCounts(placeDetails);
 
             if (placeDetails.getRating() != null) {
-                int numberOfStars = PlaceDetails.getNumberOfStarsToDisplay(placeDetails.getRating());
+                int numberOfStars = PlaceRow.getNumberOfStarsToDisplay(placeDetails.getRating());
                 if (numberOfStars == 1)
                     binding.oneStar.setVisibility(View.VISIBLE);
                 if (numberOfStars == 2)
@@ -146,62 +149,37 @@ public class RestaurantListAdapter extends RecyclerView.Adapter<RecyclerView.Vie
             }
         }
 
-        private void displayOpeningHours(PlaceDetails placeDetails) {
-            Period todayOpeningHours = getTodayOpeningHours(placeDetails);
-            if (todayOpeningHours != null) {
-                if (todayOpeningHours.getClose() != null) {
-                    if (!restaurantClosingSoon(todayOpeningHours.getClose())) {
-                        String time = todayOpeningHours.getClose().getTime();
-                        String finalTime = time.substring(0, 2) + "h" + time.substring(2);
-                        binding.openingHours.setText(res.getString(R.string.open_until, finalTime));
-                    }
-                } else if (todayOpeningHours.getOpen().getDay() == 0 && todayOpeningHours.getOpen().getTime().equals(OPEN_24H))
-                    binding.openingHours.setText(R.string.open_24h);
-            } else {
-                binding.openingHours.setText(R.string.open);
-            }
-        }
-
-        // To check if restaurant is currently closed but will open later or not
-        private void displayClosed(PlaceDetails placeDetails) {
-            Period todayOpeningHours = getTodayOpeningHours(placeDetails);
-            if (todayOpeningHours != null) {
-                String openingHour = todayOpeningHours.getOpen().getTime();
-                if (Integer.parseInt(openingHour) > Integer.parseInt(convertDateToStringHour(new Date()))) {
-                    String finalTime = openingHour.substring(0, 2) + "h" + openingHour.substring(2);
-                    binding.openingHours.setText(res.getString(R.string.close_will_open_at, finalTime));
-                } else
-                    binding.openingHours.setText(R.string.close);
-            } else
-                binding.openingHours.setText(R.string.close);
+        void bindCounts(RestaurantRow placeDetails) {
+            binding.restaurantDistance.setText(res.getString(R.string.distance, placeDetails.getDistance()));
+            binding.nbrOfWorkmates.setText(res.getString(R.string.nbr_of_workmates, placeDetails.getNbrOfWorkmates()));
         }
 
-        private Period getTodayOpeningHours(PlaceDetails placeDetails) {
-            Period openingHours = null;
-            int today = OpeningHours.getTodaysDay();
-            if (today >= 0 && placeDetails.getOpeningHours().getPeriods() != null) {
-                if (placeDetails.getOpeningHours().getPeriods().size() == Calendar.DAY_OF_WEEK) {
-                    openingHours = placeDetails.getOpeningHours().getPeriods().get(today);
-                }
+        // The status is computed from the clock : open_now may have been cached for a while
+        private void displayOpeningSchedule(OpeningSchedule openingSchedule) {
+            if (openingSchedule.isAlwaysOpen()) {
+                binding.openingHours.setTextColor(res.getColor(R.color.quantum_googgreen));
+                binding.openingHours.setText(R.string.open_24h);
+                return;
             }
-            return openingHours;
-        }
-
-        private boolean restaurantClosingSoon(Close close) {
-            int timeLeftBeforeClosing = Integer.parseInt(close.getTime()) - Integer.parseInt(convertDateToStringHour(new Date()));
-            if (timeLeftBeforeClosing > 0 && timeLeftBeforeClosing < ONE_HOUR) {
+            int now = openingSchedule.getMinuteOfWeek(System.currentTimeMillis());
+            int openInterval = openingSchedule.getOpenInterval(now);
+            if (openInterval == OpeningSchedule.NONE) {
+                // To check if restaurant is currently closed but will open later or not
+                binding.openingHours.setTextColor(res.getColor(R.color.quantum_googred));
+                int nextOpening = openingSchedule.getNextOpeningToday(now);
+                if (nextOpening != OpeningSchedule.NONE)
+                    binding.openingHours.setText(res.getString(R.string.close_will_open_at, openingSchedule.getOpenLabel(nextOpening)));
+                else
+                    binding.openingHours.setText(R.string.close);
+            } else if (openingSchedule.isClosingSoon(openInterval, now)) {
                 binding.openingHours.setText(R.string.closing_soon);
                 binding.openingHours.setTextColor(res.getColor(R.color.quantum_googred));
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M)
                     binding.openingHours.setTextAppearance(R.style.TextStyleRedBold);
-                return true;
-            } else
-                return false;
-        }
-
-        String convertDateToStringHour(Date date) {
-            DateFormat format = new SimpleDateFormat("HHmm", Locale.getDefault());
-            return format.format(date);
+            } else {
+                binding.openingHours.setTextColor(res.getColor(R.color.quantum_googgreen));
+                binding.openingHours.setText(res.getString(R.string.open_until, openingSchedule.getCloseLabel(openInterval)));
+            }
         }
     }
 }
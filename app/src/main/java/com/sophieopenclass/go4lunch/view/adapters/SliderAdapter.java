@@ -15,10 +15,11 @@ import com.sophieopenclass.go4lunch.R;
 import java.util.List;
 
 public class SliderAdapter extends RecyclerView.Adapter<SliderAdapter.SliderViewHolder> {
-    private List<String> photoUrls;
+    // PlacePhoto models, or URLs
+    private List<Object> photos;
 
-    public SliderAdapter(List<String> photoUrls) {
-        this.photoUrls = photoUrls;
+    public SliderAdapter(List<Object> photos) {
+        this.photos = photos;
     }
 
     @NonNull
@@ -30,12 +31,12 @@ public class SliderAdapter extends RecyclerView.Adapter<SliderAdapter.SliderView
 
     @Override
     public void onBindViewHolder(@NonNull SliderViewHolder holder, int position) {
-        holder.bind(photoUrls.get(position));
+        holder.bind(photos.get(position));
     }
 
     @Override
     public int getItemCount() {
-        return photoUrls.size();
+        return photos.size();
     }
 
     static class SliderViewHolder extends RecyclerView.ViewHolder{
@@ -46,9 +47,9 @@ public class SliderAdapter extends RecyclerView.Adapter<SliderAdapter.SliderView
             this.imageView = itemView.findViewById(R.id.imageSlide);
         }
 
-        void bind(String urlPhoto) {
+        void bind(Object photo) {
             Glide.with(imageView.getContext())
-                    .load(urlPhoto)
+                    .load(photo)
                     .apply(RequestOptions.centerCropTransform())
                     .into(imageView);
         }
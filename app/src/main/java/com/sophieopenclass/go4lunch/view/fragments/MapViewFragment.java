@@ -4,9 +4,10 @@ import android.content.Context;
 import android.content.Intent;
 import android.location.Location;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.Editable;
 import android.text.TextWatcher;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -16,6 +17,7 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.LiveData;
 
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
@@ -26,18 +28,14 @@ import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.MapStyleOptions;
-import com.google.android.gms.maps.model.Marker;
-import com.google.android.gms.maps.model.MarkerOptions;
 import com.google.android.gms.tasks.Task;
-import com.google.android.libraries.places.api.model.AutocompletePrediction;
 import com.google.android.libraries.places.api.model.AutocompleteSessionToken;
-import com.google.android.libraries.places.api.model.Place;
 import com.google.android.libraries.places.api.model.RectangularBounds;
-import com.google.android.libraries.places.api.model.TypeFilter;
-import com.google.android.libraries.places.api.net.FindAutocompletePredictionsRequest;
-import com.google.android.libraries.places.api.net.FindAutocompletePredictionsResponse;
 import com.google.android.material.snackbar.BaseTransientBottomBar;
 import com.google.android.material.snackbar.Snackbar;
+import com.google.maps.android.SphericalUtil;
+import com.google.maps.android.clustering.Cluster;
+import com.google.maps.android.clustering.ClusterManager;
 import com.sophieopenclass.go4lunch.AppController;
 import com.sophieopenclass.go4lunch.MyViewModel;
 import com.sophieopenclass.go4lunch.R;
@@ -45,12 +43,22 @@ import com.sophieopenclass.go4lunch.view.activities.MainActivity;
 import com.sophieopenclass.go4lunch.view.activities.RestaurantDetailsActivity;
 import com.sophieopenclass.go4lunch.databinding.ActivityMainBinding;
 import com.sophieopenclass.go4lunch.databinding.FragmentMapBinding;
-import com.sophieopenclass.go4lunch.models.json_to_java.PlaceDetails;
+import com.sophieopenclass.go4lunch.models.DailyLunches;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRow;
+import com.sophieopenclass.go4lunch.models.json_to_java.RestaurantsResult;
+import com.sophieopenclass.go4lunch.repository.CancellableLiveData;
+import com.sophieopenclass.go4lunch.utils.MarkerRegistry;
 import com.sophieopenclass.go4lunch.utils.PreferenceHelper;
+import com.sophieopenclass.go4lunch.utils.RestaurantClusterItem;
+import com.sophieopenclass.go4lunch.utils.RestaurantClusterRenderer;
 import com.sophieopenclass.go4lunch.utils.VectorConverter;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static com.sophieopenclass.go4lunch.utils.Constants.PLACE_ID;
 import static com.sophieopenclass.go4lunch.utils.DateFormatting.getTodayDateInString;
@@ -62,9 +70,15 @@ public class MapViewFragment extends Fragment implements OnMapReadyCallback {
     private GoogleMap mMap;
     private Location currentLocation;
     private static final float DEFAULT_ZOOM = 17.5f;
+    private static final long CAMERA_IDLE_DEBOUNCE = 400;
+    private static final double MIN_CAMERA_DISPLACEMENT = 100; // meters
+    private static final int MAX_MARKERS = 150;
+    // Rendering mode : restaurants close to each other are grouped when zoomed out
+    private static final boolean CLUSTER_MARKERS = true;
+    private static final int MAX_CLUSTERED_MARKERS = 500;
+    private static final int CLUSTER_ZOOM_PADDING = 150; // pixels
     private boolean autocompleteActive;
     private Location cameraLocation = null;
-    private List<AutocompletePrediction> predictionList;
     private String searchBarTextInput;
     private MainActivity activity;
     private ActivityMainBinding mainBinding;
@@ -72,6 +86,20 @@ public class MapViewFragment extends Fragment implements OnMapReadyCallback {
     private TextWatcher textWatcher;
     private String currentAppLocale = PreferenceHelper.getCurrentLocale();
     private final AutocompleteSessionToken token = AutocompleteSessionToken.newInstance();
+    private final Handler cameraIdleHandler = new Handler(Looper.getMainLooper());
+    private final Runnable cameraIdleRunnable = this::onCameraSettled;
+    private LatLng lastNearbySearchTarget;
+    private LiveData<RestaurantsResult> nearbyPlacesData;
+    private LiveData<List<PlaceRow>> autocompleteRowsData;
+    private DailyLunches dailyLunches;
+    // lunches/{today} doesn't exist : the colors come from the choices saved in the users' documents
+    private boolean dailyLunchesMissing;
+    private final Map<String, List<String>> uidsFromUsers = new HashMap<>();
+    // Restaurants of the query still running : a new query replaces it and includes them
+    private final Set<String> uidsFromUsersPending = new LinkedHashSet<>();
+    private LiveData<Map<String, List<String>>> uidsFromUsersData;
+    private MarkerRegistry markerRegistry;
+    private ClusterManager<RestaurantClusterItem> clusterManager;
 
     public static Fragment newInstance() {
         return new MapViewFragment();
@@ -91,6 +119,8 @@ public class MapViewFragment extends Fragment implements OnMapReadyCallback {
         }
 
         viewModel = activity.getViewModel();
+        // Marker icons are drawn while the map is loading
+        VectorConverter.prewarm(getResources(), R.drawable.ic_marker_red, R.drawable.ic_marker_green);
         textWatcher = getTextWatcher();
         mainBinding.searchBarMap.searchBarInput.addTextChangedListener(textWatcher);
         mainBinding.searchBarMap.closeSearchBar.setOnClickListener(v -> {
@@ -104,6 +134,13 @@ public class MapViewFragment extends Fragment implements OnMapReadyCallback {
         return binding.getRoot();
     }
 
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        // Markers are re-colored as soon as a workmate chooses or cancels a restaurant
+        viewModel.getTodayLunches().observe(getViewLifecycleOwner(), this::onDailyLunchesChanged);
+    }
+
     private TextWatcher getTextWatcher() {
         return new TextWatcher() {
             //to stop the TextWatcher from firing multiple times
@@ -121,7 +158,6 @@ public class MapViewFragment extends Fragment implements OnMapReadyCallback {
             @Override
             public void afterTextChanged(Editable s) {
                 if (!activity.orientationChanged && isOnTextChanged) {
-                    mMap.clear();
                     isOnTextChanged = false;
                     searchBarTextInput = s.toString();
                     autocompleteActive = true;
@@ -145,16 +181,12 @@ public class MapViewFragment extends Fragment implements OnMapReadyCallback {
     public void onResume() {
         super.onResume();
         activity.orientationChanged = false;
-        if (activity.networkUnavailable()) {
-            Snackbar.make(activity.binding.getRoot(), getString(R.string.internet_unavailable), BaseTransientBottomBar.LENGTH_INDEFINITE)
-                    .setTextColor(getResources().getColor(R.color.quantum_white_100)).setDuration(5000).show();
-        } else {
-            if (activity.requestLocationAccess()) {
-                if (cameraLocation == null)
-                    fetchLastLocation();
-                else
-                    getNearbyPlaces(cameraLocation);
-            }
+        // getNearbyPlaces warns if the network is unavailable, and displays the saved restaurants
+        if (activity.requestLocationAccess()) {
+            if (cameraLocation == null)
+                fetchLastLocation();
+            else
+                getNearbyPlaces(cameraLocation);
         }
     }
 
@@ -175,38 +207,16 @@ public class MapViewFragment extends Fragment implements OnMapReadyCallback {
         LatLng northEast = new LatLng(northEastLat, northEastLng);
         LatLng southWest = new LatLng(southWestLat, southWestLng);
 
-        FindAutocompletePredictionsRequest predictionsRequest = FindAutocompletePredictionsRequest.builder()
-                .setTypeFilter(TypeFilter.ESTABLISHMENT)
-                .setSessionToken(token)
-                .setLocationRestriction(RectangularBounds.newInstance(southWest, northEast))
-                .setQuery(searchBarTextInput)
-                .build();
-
-        activity.placesClient.findAutocompletePredictions(predictionsRequest).addOnCompleteListener(task -> {
-            if (task.isSuccessful()) {
-                FindAutocompletePredictionsResponse predictionsResponse = task.getResult();
-                if (predictionsResponse != null) {
-                    predictionList = predictionsResponse.getAutocompletePredictions();
-                    List<String> suggestionsList = new ArrayList<>();
-                    for (int i = 0; i < predictionList.size(); i++) {
-                        AutocompletePrediction prediction = predictionList.get(i);
-                        if (prediction.getPlaceTypes().contains(Place.Type.RESTAURANT)) {
-                            suggestionsList.add(prediction.getPlaceId());
-                        }
-                    }
-                    getPlaceDetailAutocompleteList(suggestionsList);
-                }
-            } else {
-                Log.i(TAG, "Prediction fetching task unsuccessful");
-            }
-        });
-    }
-
-    private void getPlaceDetailAutocompleteList(List<String> suggestionsList) {
-        viewModel.getPlaceDetailsList(suggestionsList, currentAppLocale).observe(activity, placeDetailsList -> {
-            if (!placeDetailsList.isEmpty())
-                initMarkers(placeDetailsList);
-        });
+        // Only the results of the last input are useful
+        if (autocompleteRowsData != null) {
+            autocompleteRowsData.removeObservers(activity);
+            CancellableLiveData.cancel(autocompleteRowsData);
+        }
+        autocompleteRowsData = viewModel.getAutocompleteRows(searchBarTextInput,
+                RectangularBounds.newInstance(southWest, northEast), token, currentAppLocale);
+        // The restaurants found on the device can be followed by a list completed with the remote ones,
+        // each list replaces the markers of the previous one
+        autocompleteRowsData.observe(activity, placeDetailsList -> initMarkers(placeDetailsList, true));
     }
 
     @Override
@@ -217,7 +227,32 @@ public class MapViewFragment extends Fragment implements OnMapReadyCallback {
         mMap.getUiSettings().setMapToolbarEnabled(false);
         mMap.getUiSettings().setZoomGesturesEnabled(true);
         mMap.setMapStyle(MapStyleOptions.loadRawResourceStyle(activity, R.raw.map_style));
-        mMap.setOnInfoWindowClickListener(this::startRestaurantActivity);
+        if (CLUSTER_MARKERS) {
+            // The clusters are computed on a background thread by the ClusterManager
+            clusterManager = new ClusterManager<>(activity, mMap);
+            RestaurantClusterRenderer clusterRenderer = new RestaurantClusterRenderer(activity, mMap, clusterManager,
+                    R.drawable.ic_marker_red, R.drawable.ic_marker_green);
+            clusterManager.setRenderer(clusterRenderer);
+            clusterManager.setOnClusterClickListener(this::zoomOnCluster);
+            // The ClusterManager replaces the info window listener of the map with its own
+            clusterManager.setOnClusterItemInfoWindowClickListener(item -> startRestaurantActivity(item.getPlaceId()));
+            mMap.setOnMarkerClickListener(clusterManager);
+            markerRegistry = new MarkerRegistry(clusterManager, clusterRenderer, MAX_CLUSTERED_MARKERS);
+        } else {
+            mMap.setOnInfoWindowClickListener(marker -> {
+                if (marker.getTag() != null)
+                    startRestaurantActivity(marker.getTag().toString());
+            });
+            markerRegistry = new MarkerRegistry(mMap, getResources(), MAX_MARKERS);
+        }
+    }
+
+    private boolean zoomOnCluster(Cluster<RestaurantClusterItem> cluster) {
+        LatLngBounds.Builder bounds = LatLngBounds.builder();
+        for (RestaurantClusterItem item : cluster.getItems())
+            bounds.include(item.getPosition());
+        mMap.animateCamera(CameraUpdateFactory.newLatLngBounds(bounds.build(), CLUSTER_ZOOM_PADDING));
+        return true;
     }
 
     private void fetchLastLocation() {
@@ -253,58 +288,147 @@ public class MapViewFragment extends Fragment implements OnMapReadyCallback {
             getNearbyPlaces(currentLocation);
 
         cameraLocation = new Location(currentLocation);
-        mMap.setOnCameraMoveStartedListener(i -> {
-            cameraLocation = new Location(CAMERA_LOCATION);
-            cameraLocation.setLongitude(mMap.getCameraPosition().target.longitude);
-            cameraLocation.setLatitude(mMap.getCameraPosition().target.latitude);
-            if (!autocompleteActive)
-                getNearbyPlaces(cameraLocation);
-            else
-                displayResultsAutocomplete(mainBinding.searchBarMap.searchBarInput.getText().toString());
+        // The map is only refreshed once the camera has stopped moving for CAMERA_IDLE_DEBOUNCE
+        mMap.setOnCameraMoveStartedListener(i -> cameraIdleHandler.removeCallbacks(cameraIdleRunnable));
+        mMap.setOnCameraIdleListener(() -> {
+            // Clusters follow the zoom right away, only the search is debounced
+            if (clusterManager != null)
+                clusterManager.onCameraIdle();
+            cameraIdleHandler.removeCallbacks(cameraIdleRunnable);
+            cameraIdleHandler.postDelayed(cameraIdleRunnable, CAMERA_IDLE_DEBOUNCE);
         });
     }
 
-    private void getNearbyPlaces(Location currentLocation) {
-        if (activity.networkUnavailable()) {
-            if (getView() != null)
-                Snackbar.make(getView(), getString(R.string.internet_unavailable), BaseTransientBottomBar.LENGTH_INDEFINITE)
-                        .setDuration(5000).show();
-        } else if (activity.requestLocationAccess()) {
-            viewModel.getNearbyPlaces(AppController.getInstance().getLatLngString(currentLocation))
-                    .observe(getViewLifecycleOwner(), restaurantsResult -> {
-                        if (restaurantsResult != null)
-                            initMarkers(restaurantsResult.getPlaceDetails());
-                    });
+    private void onCameraSettled() {
+        if (mMap == null || getView() == null)
+            return;
+        LatLng target = mMap.getCameraPosition().target;
+        cameraLocation = new Location(CAMERA_LOCATION);
+        cameraLocation.setLongitude(target.longitude);
+        cameraLocation.setLatitude(target.latitude);
+        if (autocompleteActive) {
+            displayResultsAutocomplete(mainBinding.searchBarMap.searchBarInput.getText().toString());
+            return;
         }
+        displayIndexedPlaces(mMap.getProjection().getVisibleRegion().latLngBounds);
+        if (lastNearbySearchTarget == null
+                || SphericalUtil.computeDistanceBetween(lastNearbySearchTarget, target) >= MIN_CAMERA_DISPLACEMENT)
+            getNearbyPlaces(cameraLocation);
     }
 
-    private void initMarkers(List<PlaceDetails> placeDetailsList) {
-        for (PlaceDetails placeDetails : placeDetailsList) {
-            viewModel.getUsersEatingAtRestaurantToday(placeDetails.getPlaceId(), getTodayDateInString()).observe(getViewLifecycleOwner(), users -> {
-                int markerDrawable = R.drawable.ic_marker_red;
-                if (activity.getCurrentUser() != null) {
-                    if (users.isEmpty() || (users.size() == 1 && users.get(0).getUid().equals(activity.getCurrentUser().getUid())))
-                        markerDrawable = R.drawable.ic_marker_red;
-                    else
-                        markerDrawable = R.drawable.ic_marker_green;
-                }
-                Marker marker = mMap.addMarker(new MarkerOptions().title(placeDetails.getName())
-                        .position(new LatLng(placeDetails.getGeometry().getLocation().getLat(),
-                                placeDetails.getGeometry().getLocation().getLng()))
-                        .icon(VectorConverter.getBitmapFromVector(markerDrawable, getResources())));
-                marker.setTag(placeDetails.getPlaceId());
+    // Places already loaded in the visible region, displayed right away without waiting for the search
+    private void displayIndexedPlaces(LatLngBounds bounds) {
+        List<PlaceRow> indexedPlaces = viewModel.getIndexedPlacesInBounds(bounds.southwest.latitude,
+                bounds.southwest.longitude, bounds.northeast.latitude, bounds.northeast.longitude);
+        if (!indexedPlaces.isEmpty())
+            initMarkers(indexedPlaces, false);
+    }
+
+    // Without network the restaurants saved on the device are still displayed
+    private void getNearbyPlaces(Location currentLocation) {
+        if (activity.networkUnavailable() && getView() != null)
+            Snackbar.make(getView(), getString(R.string.internet_unavailable), BaseTransientBottomBar.LENGTH_INDEFINITE)
+                    .setDuration(5000).show();
+        if (activity.requestLocationAccess()) {
+            // The previous search is superseded : its call is cancelled and its result ignored
+            if (nearbyPlacesData != null) {
+                nearbyPlacesData.removeObservers(getViewLifecycleOwner());
+                CancellableLiveData.cancel(nearbyPlacesData);
+            }
+            lastNearbySearchTarget = new LatLng(currentLocation.getLatitude(), currentLocation.getLongitude());
+            nearbyPlacesData = viewModel.getNearbyPlaces(AppController.getInstance().getLatLngString(currentLocation));
+            nearbyPlacesData.observe(getViewLifecycleOwner(), restaurantsResult -> {
+                if (restaurantsResult != null)
+                    initMarkers(restaurantsResult.getPlaceDetails(), false);
             });
         }
     }
 
+    // The colors come from the lunches of the day, kept up to date by one listener. The markers already on
+    // the map are kept and only re-colored if needed ; replace removes the ones that aren't in the list.
+    private void initMarkers(List<? extends PlaceRow> placeDetailsList, boolean replace) {
+        if (markerRegistry == null)
+            return;
+        List<MarkerRegistry.MarkerSpec> markerSpecs = new ArrayList<>();
+        for (PlaceRow placeDetails : placeDetailsList)
+            markerSpecs.add(new MarkerRegistry.MarkerSpec(placeDetails.getPlaceId(), placeDetails.getName(),
+                    new LatLng(placeDetails.getGeometry().getLocation().getLat(),
+                            placeDetails.getGeometry().getLocation().getLng()),
+                    getMarkerDrawable(placeDetails.getPlaceId())));
+        if (replace)
+            markerRegistry.show(markerSpecs);
+        else
+            markerRegistry.add(markerSpecs);
+        if (dailyLunchesMissing) {
+            List<String> placeIds = new ArrayList<>();
+            for (PlaceRow placeDetails : placeDetailsList)
+                placeIds.add(placeDetails.getPlaceId());
+            loadUidsFromUsers(placeIds);
+        }
+    }
+
+    // Green when workmates other than the current user eat there. Red until the lunches are loaded.
+    private int getMarkerDrawable(String placeId) {
+        List<String> uids = dailyLunches != null ? dailyLunches.getUids(placeId) : uidsFromUsers.get(placeId);
+        if (uids == null || activity.getCurrentUser() == null)
+            return R.drawable.ic_marker_red;
+        if (uids.isEmpty() || (uids.size() == 1 && uids.get(0).equals(activity.getCurrentUser().getUid())))
+            return R.drawable.ic_marker_red;
+        return R.drawable.ic_marker_green;
+    }
+
+    // Only the markers whose color changed are updated. dailyLunches is null while the document doesn't exist,
+    // and changes at midnight
+    private void onDailyLunchesChanged(@Nullable DailyLunches dailyLunches) {
+        this.dailyLunches = dailyLunches;
+        dailyLunchesMissing = dailyLunches == null;
+        uidsFromUsers.clear();
+        cancelUidsFromUsers();
+        if (markerRegistry == null)
+            return;
+        if (dailyLunchesMissing)
+            loadUidsFromUsers(markerRegistry.getPlaceIds());
+        for (String placeId : markerRegistry.getPlaceIds())
+            markerRegistry.setIcon(placeId, getMarkerDrawable(placeId));
+    }
 
+    // Choices made before lunches/{today} existed, or by older versions of the app. Only one query runs at
+    // a time : it's replaced by one for its restaurants and the new ones, the loaded restaurants are skipped
+    private void loadUidsFromUsers(List<String> placeIds) {
+        Set<String> missingPlaceIds = new LinkedHashSet<>(uidsFromUsersPending);
+        for (String placeId : placeIds)
+            if (!uidsFromUsers.containsKey(placeId))
+                missingPlaceIds.add(placeId);
+        if (missingPlaceIds.size() == uidsFromUsersPending.size())
+            return;
+        cancelUidsFromUsers();
+        uidsFromUsersPending.addAll(missingPlaceIds);
+        String date = getTodayDateInString();
+        uidsFromUsersData = viewModel.getUidsEatingAtRestaurants(new ArrayList<>(missingPlaceIds), date);
+        uidsFromUsersData.observe(getViewLifecycleOwner(), uidsByPlaceId -> {
+            uidsFromUsersPending.clear();
+            // Once the document exists, it's the only source
+            if (!dailyLunchesMissing || markerRegistry == null || !date.equals(getTodayDateInString()))
+                return;
+            uidsFromUsers.putAll(uidsByPlaceId);
+            for (String placeId : uidsByPlaceId.keySet())
+                markerRegistry.setIcon(placeId, getMarkerDrawable(placeId));
+        });
+    }
 
-    private void startRestaurantActivity(Marker marker) {
-        if (marker.getTag() != null) {
-            Intent intent = new Intent(getActivity(), RestaurantDetailsActivity.class);
-            intent.putExtra(PLACE_ID, marker.getTag().toString());
-            startActivity(intent);
+    private void cancelUidsFromUsers() {
+        if (uidsFromUsersData != null) {
+            uidsFromUsersData.removeObservers(getViewLifecycleOwner());
+            CancellableLiveData.cancel(uidsFromUsersData);
+            uidsFromUsersData = null;
         }
+        uidsFromUsersPending.clear();
+    }
+
+    private void startRestaurantActivity(String placeId) {
+        Intent intent = new Intent(getActivity(), RestaurantDetailsActivity.class);
+        intent.putExtra(PLACE_ID, placeId);
+        startActivity(intent);
     }
 
     @Override
@@ -316,6 +440,10 @@ public class MapViewFragment extends Fragment implements OnMapReadyCallback {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        cameraIdleHandler.removeCallbacks(cameraIdleRunnable);
+        CancellableLiveData.cancel(autocompleteRowsData);
+        CancellableLiveData.cancel(nearbyPlacesData);
+        CancellableLiveData.cancel(uidsFromUsersData);
         cameraLocation = null;
         activity.binding.searchBarMap.searchBarInput.removeTextChangedListener(textWatcher);
     }
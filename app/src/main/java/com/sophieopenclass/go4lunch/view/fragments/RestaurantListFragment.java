@@ -3,10 +3,8 @@ package com.sophieopenclass.go4lunch.view.fragments;
 import android.content.Context;
 import android.location.Location;
 import android.os.Bundle;
-import android.os.Handler;
 import android.text.Editable;
 import android.text.TextWatcher;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -16,6 +14,8 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.LiveData;
+import androidx.recyclerview.widget.ConcatAdapter;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -24,13 +24,8 @@ import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.tasks.Task;
-import com.google.android.libraries.places.api.model.AutocompletePrediction;
 import com.google.android.libraries.places.api.model.AutocompleteSessionToken;
-import com.google.android.libraries.places.api.model.Place;
 import com.google.android.libraries.places.api.model.RectangularBounds;
-import com.google.android.libraries.places.api.model.TypeFilter;
-import com.google.android.libraries.places.api.net.FindAutocompletePredictionsRequest;
-import com.google.android.libraries.places.api.net.FindAutocompletePredictionsResponse;
 import com.google.android.material.snackbar.BaseTransientBottomBar;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.maps.android.SphericalUtil;
@@ -38,15 +33,19 @@ import com.sophieopenclass.go4lunch.AppController;
 import com.sophieopenclass.go4lunch.MyViewModel;
 import com.sophieopenclass.go4lunch.R;
 import com.sophieopenclass.go4lunch.view.activities.MainActivity;
+import com.sophieopenclass.go4lunch.view.adapters.LoadingFooterAdapter;
 import com.sophieopenclass.go4lunch.view.adapters.RestaurantListAdapter;
 import com.sophieopenclass.go4lunch.databinding.RecyclerViewRestaurantsBinding;
-import com.sophieopenclass.go4lunch.models.json_to_java.PlaceDetails;
+import com.sophieopenclass.go4lunch.repository.CancellableLiveData;
+import com.sophieopenclass.go4lunch.repository.NearbyPagedList;
+import com.sophieopenclass.go4lunch.models.DailyLunches;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRow;
 import com.sophieopenclass.go4lunch.utils.PreferenceHelper;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.sophieopenclass.go4lunch.utils.Constants.HEADING_NORTH_WEST;
 import static com.sophieopenclass.go4lunch.utils.Constants.HEADING_SOUTH_WEST;
@@ -57,21 +56,26 @@ public class RestaurantListFragment extends Fragment {
     private static final double RADIUS = 500;
     private MyViewModel viewModel;
     private RecyclerViewRestaurantsBinding binding;
-    private List<AutocompletePrediction> predictionList;
     private LinearLayoutManager linearLayoutManager;
     private boolean autocompleteActive = false;
-    private String nextPageToken;
     private RestaurantListAdapter adapter;
-    private ArrayList<PlaceDetails> restaurantList = new ArrayList<>();
+    private LoadingFooterAdapter loadingFooterAdapter;
+    private NearbyPagedList nearbyPagedList;
+    private DailyLunches dailyLunches;
+    // lunches/{today} doesn't exist : the workmates come from the choices saved in the users' documents
+    private boolean dailyLunchesMissing;
+    private LiveData<Map<String, List<String>>> uidsFromUsersData;
+    private ArrayList<PlaceRow> restaurantList = new ArrayList<>();
+    // By placeId, kept here : the PlaceRows are shared with the other screens through the repository caches
+    private final Map<String, Integer> nbrOfWorkmates = new HashMap<>();
     private final AutocompleteSessionToken token = AutocompleteSessionToken.newInstance();
     private MainActivity context;
-    private int visibleThreshold = 5;
     private boolean searchBarInputEmpty = false;
-    private int bottomProgressBarPosition;
-    private boolean isLoading;
     private boolean locationTaskSuccessful = false;
     private TextWatcher textWatcher;
     private String currentAppLocale = PreferenceHelper.getCurrentLocale();
+    private LiveData<List<PlaceRow>> autocompleteRowsData;
+    private LiveData<Map<String, List<String>>> autocompleteUidsData;
 
     public static Fragment newInstance() {
         return new RestaurantListFragment();
@@ -87,23 +91,81 @@ public class RestaurantListFragment extends Fragment {
         initSearchBar();
         configureRecyclerView();
         binding.swipeRefreshView.setOnRefreshListener(() -> {
+            restaurantList.clear();
             adapter.clearList();
             context.binding.progressBar.setVisibility(View.VISIBLE);
-            observePlaces(null);
+            observePlaces(true);
             binding.swipeRefreshView.setRefreshing(false);
         });
         return binding.getRoot();
     }
 
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        viewModel.getTodayLunches().observe(getViewLifecycleOwner(), this::updateNbrOfWorkmates);
+    }
+
+    // Only the rows whose number of workmates changed are bound again, without reloading their photo.
+    // dailyLunches is null while the document doesn't exist, and changes at midnight
+    private void updateNbrOfWorkmates(@Nullable DailyLunches dailyLunches) {
+        this.dailyLunches = dailyLunches;
+        dailyLunchesMissing = dailyLunches == null;
+        if (restaurantList.isEmpty() || autocompleteActive)
+            return;
+        if (dailyLunchesMissing)
+            loadWorkmatesFromUsers();
+        else if (setNbrOfWorkmates(restaurantList))
+            adapter.updateList(restaurantList, nbrOfWorkmates);
+    }
+
+    // Choices made before lunches/{today} existed, or by older versions of the app
+    private void loadWorkmatesFromUsers() {
+        if (uidsFromUsersData != null) {
+            uidsFromUsersData.removeObservers(getViewLifecycleOwner());
+            CancellableLiveData.cancel(uidsFromUsersData);
+        }
+        List<String> placeIds = new ArrayList<>();
+        for (PlaceRow restaurant : restaurantList)
+            placeIds.add(restaurant.getPlaceId());
+        uidsFromUsersData = viewModel.getUidsEatingAtRestaurants(placeIds, getTodayDateInString());
+        uidsFromUsersData.observe(getViewLifecycleOwner(), uidsByPlaceId -> {
+            // Once the document exists, it's the only source
+            if (!dailyLunchesMissing || autocompleteActive)
+                return;
+            for (PlaceRow restaurant : restaurantList) {
+                List<String> uids = uidsByPlaceId.get(restaurant.getPlaceId());
+                if (uids != null)
+                    nbrOfWorkmates.put(restaurant.getPlaceId(), uids.size());
+            }
+            adapter.updateList(restaurantList, nbrOfWorkmates);
+        });
+    }
+
+    // Returns true if at least one restaurant changed
+    private boolean setNbrOfWorkmates(List<PlaceRow> restaurants) {
+        if (dailyLunches == null)
+            return false;
+        boolean changed = false;
+        for (PlaceRow restaurant : restaurants) {
+            int count = dailyLunches.getCount(restaurant.getPlaceId());
+            Integer previousCount = nbrOfWorkmates.put(restaurant.getPlaceId(), count);
+            if (previousCount == null || previousCount != count)
+                changed = true;
+        }
+        return changed;
+    }
+
     private void initSearchBar() {
         context.binding.searchBarRestaurantList.closeSearchBar.setOnClickListener(v -> {
             closeSearchBar();
             //To refresh the page only if the user typed something into the search bar
             if (autocompleteActive) {
+                restaurantList.clear();
                 adapter.clearList();
                 autocompleteActive = false;
                 context.binding.progressBar.setVisibility(View.VISIBLE);
-                observePlaces(null);
+                observePlaces(false);
             }
         });
         textWatcher = getTextWatcher();
@@ -114,45 +176,25 @@ public class RestaurantListFragment extends Fragment {
         linearLayoutManager = new LinearLayoutManager(getContext());
         binding.recyclerViewRestaurants.setHasFixedSize(true);
         binding.recyclerViewRestaurants.setLayoutManager(linearLayoutManager);
-        adapter = new RestaurantListAdapter(restaurantList, context, Glide.with(this));
-        binding.recyclerViewRestaurants.setAdapter(adapter);
+        adapter = new RestaurantListAdapter(context, Glide.with(this));
+        loadingFooterAdapter = new LoadingFooterAdapter();
+        binding.recyclerViewRestaurants.setAdapter(new ConcatAdapter(adapter, loadingFooterAdapter));
         initScrollListener();
     }
 
+    // The paged list decides if the next page is needed, and never loads the same page twice
     private void initScrollListener() {
         RecyclerView.OnScrollListener scrollListener = new RecyclerView.OnScrollListener() {
             @Override
             public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
                 super.onScrolled(recyclerView, dx, dy);
-                int lastVisibleItem = linearLayoutManager.findLastCompletelyVisibleItemPosition();
-                if (!isLoading) {
-                    if (lastVisibleItem == restaurantList.size() - visibleThreshold) {
-                        loadNextDataFromApi();
-                        isLoading = true;
-                    }
-                }
+                if (!autocompleteActive && nearbyPagedList != null)
+                    nearbyPagedList.loadAround(linearLayoutManager.findLastVisibleItemPosition());
             }
         };
         binding.recyclerViewRestaurants.addOnScrollListener(scrollListener);
     }
 
-    private void loadNextDataFromApi() {
-        if (!autocompleteActive) {
-            if (nextPageToken != null) {
-                binding.recyclerViewRestaurants.post(() -> {
-                    restaurantList.add(null);
-                    adapter.notifyItemInserted(restaurantList.size() - 1);
-                });
-
-                Handler handler = new Handler();
-                handler.postDelayed(() -> {
-                    bottomProgressBarPosition = restaurantList.size() - 1;
-                    observePlaces(nextPageToken);
-                }, 2000);
-            }
-        }
-    }
-
     @Override
     public void onViewStateRestored(@Nullable Bundle savedInstanceState) {
         super.onViewStateRestored(savedInstanceState);
@@ -163,7 +205,7 @@ public class RestaurantListFragment extends Fragment {
     public void onResume() {
         if (restaurantList.isEmpty() && !autocompleteActive) {
             context.binding.progressBar.setVisibility(View.VISIBLE);
-            observePlaces(null);
+            observePlaces(false);
             context.binding.searchBarRestaurantList.searchBarInput.getText().clear();
         }
 
@@ -171,74 +213,93 @@ public class RestaurantListFragment extends Fragment {
         super.onResume();
     }
 
-    private void observePlaces(String nextPageToken) {
-        if (context.networkUnavailable()) {
+    // Without network the restaurants saved on the device are still displayed.
+    // The paged list is kept by the ViewModel : after a rotation it answers with the pages already loaded
+    private void observePlaces(boolean refresh) {
+        if (context.networkUnavailable())
             Snackbar.make(binding.getRoot(), getString(R.string.internet_unavailable), BaseTransientBottomBar.LENGTH_INDEFINITE)
                     .setDuration(5000).setTextColor(getResources().getColor(R.color.quantum_white_100)).show();
-            context.binding.progressBar.setVisibility(View.GONE);
-            return;
-        }
 
         if (context.requestLocationAccess())
             if (AppController.getInstance().getCurrentLocation() != null) {
-                if (nextPageToken == null)
-                    viewModel.getNearbyPlaces(AppController.getInstance().getLatLngString())
-                            .observe(getViewLifecycleOwner(), restaurantsResult -> {
-                                if (restaurantsResult != null) {
-                                    getFullPlaceDetails(restaurantsResult.getPlaceDetails());
-                                    this.nextPageToken = restaurantsResult.getNextPageToken();
-                                }
-                            });
-                else
-                    viewModel.getMoreNearbyPlaces(nextPageToken).observe(getViewLifecycleOwner(), restaurantsResult -> {
-                        getFullPlaceDetails(restaurantsResult.getPlaceDetails());
-                        // Check to not return the same result twice
-                        if (this.nextPageToken.equals(restaurantsResult.getNextPageToken()))
-                            this.nextPageToken = null;
-                        else
-                            this.nextPageToken = restaurantsResult.getNextPageToken();
-                    });
+                String location = AppController.getInstance().getLatLngString();
+                List<PlaceRow> placeholders = getIndexedPlaces(AppController.getInstance().getCurrentLocation());
+                observeNearbyPagedList(refresh ? viewModel.refreshNearbyPagedList(location, placeholders, currentAppLocale)
+                        : viewModel.getNearbyPagedList(location, placeholders, currentAppLocale));
             } else if (getCurrentLocationFailed())
                 Toast.makeText(getActivity(), R.string.cant_get_location, Toast.LENGTH_SHORT).show();
     }
 
-    // Nearby Search doesn't return all the fields required in a PlaceDetails, therefore another
-    // query is necessary to retrieve the missing field (-> openingHours)
-    //
-    // The viewModel calls are inside each other and not called one after the other because the variables do not get initialised
-    // fast enough before being used for another viewModel.
-    private void getFullPlaceDetails(List<PlaceDetails> placeDetailsList) {
-        ArrayList<PlaceDetails> completePlaceDetailsList = new ArrayList<>();
-        for (PlaceDetails placeDetails : placeDetailsList) {
-            viewModel.getPlaceDetails(placeDetails.getPlaceId(), currentAppLocale)
-                    .observe(getViewLifecycleOwner(), restaurant ->
-                            viewModel.getUsersEatingAtRestaurantToday(placeDetails.getPlaceId(), getTodayDateInString())
-                                    .observe(getViewLifecycleOwner(), users -> {
-                                        if (restaurant != null) {
-                                            restaurant.setNbrOfWorkmates(users.size());
-                                            completePlaceDetailsList.add(restaurant);
-                                        }
-                                        ///
-                                        if (completePlaceDetailsList.size() == placeDetailsList.size()) {
-                                            Collections.sort(completePlaceDetailsList, new NearestRestaurantComparator());
-                                            if (!restaurantList.isEmpty() && !autocompleteActive) { // display next pages of results
-                                                restaurantList.remove(bottomProgressBarPosition);
-                                                adapter.notifyItemRemoved(bottomProgressBarPosition);
-                                                restaurantList.addAll(completePlaceDetailsList);
-                                                adapter.notifyDataSetChanged();
-                                                isLoading = false;
-                                            } else if (!autocompleteActive) { // display first page of results
-                                                this.restaurantList.addAll(completePlaceDetailsList);
-                                                adapter.updateList(restaurantList);
-                                            } else if (!searchBarInputEmpty) { // display Autocomplete results
-                                                adapter.updateList(completePlaceDetailsList);
-                                            }
-                                            context.binding.progressBar.setVisibility(View.GONE);
-                                        }
-                                    }));
+    // Places already loaded around, displayed while the search is running
+    private List<PlaceRow> getIndexedPlaces(Location location) {
+        List<PlaceRow> indexedPlaces = new ArrayList<>(viewModel.getIndexedPlacesWithinRadius(location.getLatitude(),
+                location.getLongitude(), RADIUS));
+        PlaceRow.sortByDistance(indexedPlaces);
+        return indexedPlaces;
+    }
+
+    private void observeNearbyPagedList(NearbyPagedList pagedList) {
+        if (nearbyPagedList != null) {
+            nearbyPagedList.getRows().removeObservers(getViewLifecycleOwner());
+            nearbyPagedList.isLoadingNextPage().removeObservers(getViewLifecycleOwner());
+        }
+        nearbyPagedList = pagedList;
+        pagedList.getRows().observe(getViewLifecycleOwner(), this::displayNearbyRestaurants);
+        pagedList.isLoadingNextPage().observe(getViewLifecycleOwner(),
+                loading -> loadingFooterAdapter.setLoading(loading && !autocompleteActive));
+    }
+
+    // Every row loaded so far, the workmates come from the lunches of the day that are already observed
+    private void displayNearbyRestaurants(List<PlaceRow> restaurants) {
+        if (autocompleteActive)
+            return;
+        restaurantList.clear();
+        restaurantList.addAll(restaurants);
+        setNbrOfWorkmates(restaurantList);
+        adapter.updateList(restaurantList, nbrOfWorkmates);
+        if (dailyLunchesMissing && !restaurantList.isEmpty())
+            loadWorkmatesFromUsers();
+        context.binding.progressBar.setVisibility(View.GONE);
+    }
+
+    // The autocomplete rows can be delivered twice : only the workmates of the last list are displayed
+    private void getWorkmatesAndDisplay(List<PlaceRow> restaurants) {
+        cancelAutocompleteWorkmates();
+        if (restaurants.isEmpty()) {
+            displayAutocompleteRestaurants(new ArrayList<>(), new HashMap<>());
+            return;
+        }
+        // One batched query for the whole page instead of one per restaurant
+        List<String> placeIds = new ArrayList<>();
+        for (PlaceRow restaurant : restaurants)
+            placeIds.add(restaurant.getPlaceId());
+        autocompleteUidsData = viewModel.getUidsEatingAtRestaurants(placeIds, getTodayDateInString());
+        autocompleteUidsData.observe(getViewLifecycleOwner(), uidsByPlaceId -> {
+            Map<String, Integer> autocompleteNbrOfWorkmates = new HashMap<>();
+            for (PlaceRow restaurant : restaurants) {
+                String placeId = restaurant.getPlaceId();
+                autocompleteNbrOfWorkmates.put(placeId, uidsByPlaceId.get(placeId).size());
+            }
+            displayAutocompleteRestaurants(new ArrayList<>(restaurants), autocompleteNbrOfWorkmates);
+        });
+    }
+
+    private void cancelAutocompleteWorkmates() {
+        if (autocompleteUidsData != null) {
+            autocompleteUidsData.removeObservers(getViewLifecycleOwner());
+            CancellableLiveData.cancel(autocompleteUidsData);
+            autocompleteUidsData = null;
         }
     }
 
+    private void displayAutocompleteRestaurants(ArrayList<PlaceRow> completePlaceDetailsList,
+                                                Map<String, Integer> autocompleteNbrOfWorkmates) {
+        PlaceRow.sortByDistance(completePlaceDetailsList);
+        if (autocompleteActive && !searchBarInputEmpty)
+            adapter.updateList(completePlaceDetailsList, autocompleteNbrOfWorkmates);
+        context.binding.progressBar.setVisibility(View.GONE);
+    }
+
     // Clear list of restaurants so that we don't display the same results below the previous ones.
     @Override
     public void onDestroy() {
@@ -248,17 +309,6 @@ public class RestaurantListFragment extends Fragment {
         context.binding.searchBarRestaurantList.searchBarInput.removeTextChangedListener(textWatcher);
     }
 
-    /**
-     * Comparator to sort places from nearest to furthest
-     */
-    public static class NearestRestaurantComparator implements Comparator<PlaceDetails> {
-        @Override
-        public int compare(PlaceDetails left, PlaceDetails right) {
-            return left.getDistance() - right.getDistance();
-        }
-
-    }
-
     private TextWatcher getTextWatcher() {
         return new TextWatcher() {
             //to stop the TextWatcher from firing multiple times
@@ -279,6 +329,7 @@ public class RestaurantListFragment extends Fragment {
                 if (!context.orientationChanged && isOnTextChanged) {
                     isOnTextChanged = false;
                     autocompleteActive = true;
+                    loadingFooterAdapter.setLoading(false);
                     if (!s.toString().isEmpty()) {
                         displayResultsAutocomplete(s.toString());
                         searchBarInputEmpty = false;
@@ -289,40 +340,15 @@ public class RestaurantListFragment extends Fragment {
         };
     }
 
+    // Restaurants found on the device are displayed first, then replaced by the list completed with the remote ones
     private void displayResultsAutocomplete(String textInput) {
-        FindAutocompletePredictionsRequest predictionsRequest = FindAutocompletePredictionsRequest.builder()
-                .setTypeFilter(TypeFilter.ESTABLISHMENT)
-                .setSessionToken(token)
-                .setLocationRestriction(getRectangularBounds())
-                .setQuery(textInput)
-                .build();
-
-        context.placesClient.findAutocompletePredictions(predictionsRequest).addOnCompleteListener(task -> {
-            if (task.isSuccessful()) {
-                FindAutocompletePredictionsResponse predictionsResponse = task.getResult();
-                if (predictionsResponse != null) {
-                    predictionList = predictionsResponse.getAutocompletePredictions();
-                    List<String> suggestionsList = new ArrayList<>();
-                    for (int i = 0; i < predictionList.size(); i++) {
-                        AutocompletePrediction prediction = predictionList.get(i);
-                        if (prediction.getPlaceTypes().contains(Place.Type.RESTAURANT)) {
-                            suggestionsList.add(prediction.getPlaceId());
-                        }
-                    }
-                    getPlaceDetailAutocompleteList(suggestionsList);
-                }
-            } else {
-                Log.i(TAG, "Prediction fetching task unsuccessful");
-            }
-        });
-    }
-
-
-    private void getPlaceDetailAutocompleteList(List<String> suggestionsList) {
-        viewModel.getPlaceDetailsList(suggestionsList, currentAppLocale).observe(getViewLifecycleOwner(), placeDetailsList -> {
-            if (!placeDetailsList.isEmpty())
-                getFullPlaceDetails(placeDetailsList);
-        });
+        if (autocompleteRowsData != null) {
+            autocompleteRowsData.removeObservers(getViewLifecycleOwner());
+            CancellableLiveData.cancel(autocompleteRowsData);
+        }
+        cancelAutocompleteWorkmates();
+        autocompleteRowsData = viewModel.getAutocompleteRows(textInput, getRectangularBounds(), token, currentAppLocale);
+        autocompleteRowsData.observe(getViewLifecycleOwner(), this::getWorkmatesAndDisplay);
     }
 
     /**
@@ -360,7 +386,7 @@ public class RestaurantListFragment extends Fragment {
         task.addOnCompleteListener(getLocationTask -> {
             if (getLocationTask.isSuccessful()) {
                 AppController.getInstance().setCurrentLocation(getLocationTask.getResult());
-                observePlaces(null);
+                observePlaces(false);
                 locationTaskSuccessful = true;
             } else
                 locationTaskSuccessful = false;
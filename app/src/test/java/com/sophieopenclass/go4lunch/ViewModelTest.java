@@ -4,13 +4,16 @@ import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
 import androidx.lifecycle.MutableLiveData;
 
 import com.google.firebase.firestore.Query;
+import com.sophieopenclass.go4lunch.models.DailyLunches;
 import com.sophieopenclass.go4lunch.models.Message;
 import com.sophieopenclass.go4lunch.models.Restaurant;
 import com.sophieopenclass.go4lunch.models.User;
 import com.sophieopenclass.go4lunch.models.json_to_java.PlaceDetails;
 import com.sophieopenclass.go4lunch.models.json_to_java.RestaurantsResult;
 import com.sophieopenclass.go4lunch.repository.AlgoliaDataRepository;
+import com.sophieopenclass.go4lunch.repository.AutocompleteDataRepository;
 import com.sophieopenclass.go4lunch.repository.ChatDataRepository;
+import com.sophieopenclass.go4lunch.repository.NearbyPagedList;
 import com.sophieopenclass.go4lunch.repository.RestaurantDataRepository;
 import com.sophieopenclass.go4lunch.repository.UserDataRepository;
 
@@ -23,13 +26,18 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.anyList;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(JUnit4.class)
@@ -47,13 +55,17 @@ public class ViewModelTest {
     @Mock
     AlgoliaDataRepository algoliaDataSource;
 
+    @Mock
+    AutocompleteDataRepository autocompleteDataSource;
+
     @Rule
     public InstantTaskExecutorRule instantExecutorRule = new InstantTaskExecutorRule();
 
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        viewModel = new MyViewModel(restaurantDataSource, userDataSource, chatDataSource, algoliaDataSource);
+        viewModel = new MyViewModel(restaurantDataSource, userDataSource, chatDataSource, algoliaDataSource,
+                autocompleteDataSource);
     }
 
     @Test
@@ -74,6 +86,26 @@ public class ViewModelTest {
                 });
     }
 
+    @Test
+    public void test_get_nearby_paged_list_is_kept_for_the_same_search() {
+        NearbyPagedList expectedPagedList = mock(NearbyPagedList.class);
+        when(restaurantDataSource.createNearbyPagedList(anyString(), anyList(), anyString(), anyInt()))
+                .thenReturn(expectedPagedList, mock(NearbyPagedList.class));
+        assertSame(expectedPagedList, viewModel.getNearbyPagedList("1.0,2.0", Collections.emptyList(), "en"));
+        assertSame(expectedPagedList, viewModel.getNearbyPagedList("1.0,2.0", Collections.emptyList(), "en"));
+    }
+
+    @Test
+    public void test_refresh_nearby_paged_list() {
+        NearbyPagedList firstPagedList = mock(NearbyPagedList.class);
+        NearbyPagedList refreshedPagedList = mock(NearbyPagedList.class);
+        when(restaurantDataSource.createNearbyPagedList(anyString(), anyList(), anyString(), anyInt()))
+                .thenReturn(firstPagedList, refreshedPagedList);
+        viewModel.getNearbyPagedList("1.0,2.0", Collections.emptyList(), "en");
+        assertSame(refreshedPagedList, viewModel.refreshNearbyPagedList("1.0,2.0", Collections.emptyList(), "en"));
+        verify(firstPagedList).cancel();
+    }
+
     @Test
     public void test_get_place_details() {
         MutableLiveData<PlaceDetails> expectedPlaceDetails = new MutableLiveData<>(mock(PlaceDetails.class));
@@ -101,6 +133,14 @@ public class ViewModelTest {
                 assertSame(expectedRestaurant.getValue(), restaurant));
     }
 
+    @Test
+    public void test_delete_chosen_restaurant() {
+        MutableLiveData<Boolean> expectedDeleted = new MutableLiveData<>(true);
+        when(userDataSource.deleteChosenRestaurant(anyString(), anyString())).thenReturn(expectedDeleted);
+        viewModel.deleteChosenRestaurant(anyString(), anyString())
+                .observeForever(deleted -> assertSame(expectedDeleted.getValue(), deleted));
+    }
+
     @Test
     public void test_get_user() {
         MutableLiveData<User> expectedUser = new MutableLiveData<>(mock(User.class));
@@ -152,6 +192,26 @@ public class ViewModelTest {
                 .observeForever(users -> assertSame(expectedUsers.getValue(), users));
     }
 
+    @Test
+    public void test_get_today_lunches() {
+        MutableLiveData<DailyLunches> expectedLunches = new MutableLiveData<>();
+        expectedLunches.setValue(new DailyLunches());
+        when(userDataSource.getTodayLunches()).thenReturn(expectedLunches);
+        viewModel.getTodayLunches()
+                .observeForever(lunches -> assertSame(expectedLunches.getValue(), lunches));
+    }
+
+    @Test
+    public void test_get_uids_eating_at_restaurants() {
+        Map<String, List<String>> uidsByPlaceId = new HashMap<>();
+        uidsByPlaceId.put("placeId", Collections.singletonList("uid"));
+        MutableLiveData<Map<String, List<String>>> expectedUids = new MutableLiveData<>();
+        expectedUids.setValue(uidsByPlaceId);
+        when(userDataSource.getUidsEatingAtRestaurants(anyList(), anyString())).thenReturn(expectedUids);
+        viewModel.getUidsEatingAtRestaurants(Collections.singletonList("placeId"), "date")
+                .observeForever(uids -> assertSame(expectedUids.getValue(), uids));
+    }
+
     @Test
     public void test_get_messages_query(){
         Query expectedQuery = mock(Query.class);
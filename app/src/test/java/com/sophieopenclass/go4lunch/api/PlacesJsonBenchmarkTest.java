@@ -0,0 +1,132 @@
+package com.sophieopenclass.go4lunch.api;
+
+import com.google.gson.Gson;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceDetails;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceDetailsResult;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRowResult;
+import com.sophieopenclass.go4lunch.models.json_to_java.RestaurantsResult;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Compares the reflective Gson decoding with the streaming adapters on recorded Places payloads.
+ * Timings and allocations are printed, the assertions only check that both decode the same values.
+ */
+@RunWith(JUnit4.class)
+public class PlacesJsonBenchmarkTest {
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int ITERATIONS = 1000;
+    private final Gson reflectiveGson = new Gson();
+    private final Gson streamingGson = PlacesTypeAdapterFactory.getGson();
+
+    @Test
+    public void streaming_nearby_search_decodes_same_values() throws IOException {
+        String json = readResource("nearby_search.json");
+        RestaurantsResult expected = reflectiveGson.fromJson(json, RestaurantsResult.class);
+        RestaurantsResult actual = streamingGson.fromJson(json, RestaurantsResult.class);
+
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getNextPageToken(), actual.getNextPageToken());
+        assertEquals(expected.getPlaceDetails().size(), actual.getPlaceDetails().size());
+        for (int i = 0; i < expected.getPlaceDetails().size(); i++)
+            assertSamePlace(expected.getPlaceDetails().get(i), actual.getPlaceDetails().get(i));
+    }
+
+    @Test
+    public void streaming_place_details_skips_unused_subtrees() throws IOException {
+        String json = readResource("place_details.json");
+        PlaceDetails expected = reflectiveGson.fromJson(json, PlaceDetailsResult.class).getPlaceDetails();
+        PlaceDetails actual = streamingGson.fromJson(json, PlaceDetailsResult.class).getPlaceDetails();
+
+        assertSamePlace(expected, actual);
+        assertEquals(expected.getFormattedPhoneNumber(), actual.getFormattedPhoneNumber());
+        assertEquals(expected.getWebsite(), actual.getWebsite());
+        assertEquals(expected.getOpeningHours().getPeriods().size(), actual.getOpeningHours().getPeriods().size());
+        assertEquals(expected.getOpeningHours().getPeriods().get(3).getClose().getTime(),
+                actual.getOpeningHours().getPeriods().get(3).getClose().getTime());
+        assertNull(actual.getReviews());
+        assertNull(actual.getAddressComponents());
+        assertNull(actual.getGeometry().getViewport());
+    }
+
+    @Test
+    public void streaming_place_row_keeps_first_photo_only() throws IOException {
+        String json = readResource("place_details.json");
+        PlaceRowResult placeRowResult = streamingGson.fromJson(json, PlaceRowResult.class);
+
+        assertEquals("OK", placeRowResult.getStatus());
+        assertEquals(1, placeRowResult.getPlaceRow().getPhotos().size());
+        assertEquals(Integer.valueOf(120), placeRowResult.getPlaceRow().getUtcOffset());
+    }
+
+    @Test
+    public void benchmark_reflective_vs_streaming() throws IOException {
+        String nearbySearch = readResource("nearby_search.json");
+        String placeDetails = readResource("place_details.json");
+
+        benchmark("nearby search", nearbySearch, RestaurantsResult.class);
+        benchmark("place details", placeDetails, PlaceDetailsResult.class);
+    }
+
+    private void benchmark(String payloadName, String json, Class<?> type) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            reflectiveGson.fromJson(json, type);
+            streamingGson.fromJson(json, type);
+        }
+        long[] reflective = measure(reflectiveGson, json, type);
+        long[] streaming = measure(streamingGson, json, type);
+        System.out.printf("%s (%d chars) : reflective %d µs / %d bytes, streaming %d µs / %d bytes per parse%n",
+                payloadName, json.length(), reflective[0] / 1000, reflective[1], streaming[0] / 1000, streaming[1]);
+    }
+
+    // Average time in nanoseconds and allocated bytes per parse (-1 when the JVM can't count allocations)
+    private static long[] measure(Gson gson, String json, Class<?> type) {
+        long allocatedBefore = getAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            gson.fromJson(json, type);
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBefore < 0 ? -1 : (getAllocatedBytes() - allocatedBefore) / ITERATIONS;
+        return new long[]{elapsed / ITERATIONS, allocated};
+    }
+
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+    }
+
+    private static void assertSamePlace(PlaceDetails expected, PlaceDetails actual) {
+        assertEquals(expected.getPlaceId(), actual.getPlaceId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getVicinity(), actual.getVicinity());
+        assertEquals(expected.getRating(), actual.getRating());
+        assertEquals(expected.getGeometry().getLocation().getLat(), actual.getGeometry().getLocation().getLat());
+        assertEquals(expected.getGeometry().getLocation().getLng(), actual.getGeometry().getLocation().getLng());
+        assertEquals(expected.getOpeningHours().getOpenNow(), actual.getOpeningHours().getOpenNow());
+        assertEquals(expected.getPhotos().get(0).getPhotoReference(), actual.getPhotos().get(0).getPhotoReference());
+    }
+
+    private String readResource(String name) throws IOException {
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(name)) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1)
+                outputStream.write(buffer, 0, read);
+            return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
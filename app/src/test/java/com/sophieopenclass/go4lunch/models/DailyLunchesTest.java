@@ -0,0 +1,41 @@
+package com.sophieopenclass.go4lunch.models;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+@RunWith(JUnit4.class)
+public class DailyLunchesTest {
+
+    @Test
+    public void choose_moves_the_user_and_unchoose_removes_empty_restaurants() {
+        DailyLunches lunches = new DailyLunches();
+        lunches.choose("uid1", "Alice", "place1");
+        lunches.choose("uid2", "Bob", "place1");
+        lunches.choose("uid1", "Alice", "place2");
+        assertEquals(Collections.singletonList("uid2"), lunches.getUids("place1"));
+        assertEquals(1, lunches.getCount("place2"));
+        assertEquals("Alice", lunches.getParticipants("place2").get("uid1"));
+
+        assertEquals("place2", lunches.unchoose("uid1"));
+        assertFalse(lunches.getRestaurants().containsKey("place2"));
+        assertNull(lunches.unchoose("uid1"));
+        assertEquals(0, lunches.getCount("place3"));
+    }
+
+    @Test
+    public void copy_is_independent_of_the_original() {
+        DailyLunches lunches = new DailyLunches();
+        lunches.choose("uid1", "Alice", "place1");
+        DailyLunches copy = new DailyLunches(lunches);
+        copy.choose("uid2", "Bob", "place1");
+        assertEquals(1, lunches.getCount("place1"));
+        assertEquals(2, copy.getCount("place1"));
+    }
+}
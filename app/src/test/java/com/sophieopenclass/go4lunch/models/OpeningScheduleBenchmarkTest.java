@@ -0,0 +1,187 @@
+package com.sophieopenclass.go4lunch.models;
+
+import com.sophieopenclass.go4lunch.models.json_to_java.Close;
+import com.sophieopenclass.go4lunch.models.json_to_java.Open;
+import com.sophieopenclass.go4lunch.models.json_to_java.OpeningHours;
+import com.sophieopenclass.go4lunch.models.json_to_java.Period;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.lang.management.ManagementFactory;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the compiled opening hours and compares their evaluation with the parsing previously done
+ * in RestaurantListAdapter on every bind. Timings and allocations are printed.
+ */
+@RunWith(JUnit4.class)
+public class OpeningScheduleBenchmarkTest {
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int ITERATIONS = 100_000;
+    // Monday 2021-05-03 12:00 UTC
+    private static final long MONDAY_NOON_UTC = 1620043200000L;
+    private static final int MONDAY = 1;
+    private static final int SATURDAY = 6;
+
+    @Test
+    public void minute_of_week_uses_utc_offset() {
+        OpeningSchedule paris = OpeningSchedule.compile(lunchAndDinnerEveryDay(), 120);
+        OpeningSchedule newYork = OpeningSchedule.compile(lunchAndDinnerEveryDay(), -240);
+
+        assertEquals(MONDAY * 24 * 60 + 14 * 60, paris.getMinuteOfWeek(MONDAY_NOON_UTC));
+        assertEquals(MONDAY * 24 * 60 + 8 * 60, newYork.getMinuteOfWeek(MONDAY_NOON_UTC));
+    }
+
+    @Test
+    public void open_interval_and_labels() {
+        OpeningSchedule schedule = OpeningSchedule.compile(lunchAndDinnerEveryDay(), 0);
+        int mondayAt = MONDAY * 24 * 60;
+
+        int lunch = schedule.getOpenInterval(mondayAt + 12 * 60);
+        assertNotEquals(OpeningSchedule.NONE, lunch);
+        assertEquals("14h30", schedule.getCloseLabel(lunch));
+        assertFalse(schedule.isClosingSoon(lunch, mondayAt + 12 * 60));
+        assertTrue(schedule.isClosingSoon(lunch, mondayAt + 14 * 60));
+
+        assertEquals(OpeningSchedule.NONE, schedule.getOpenInterval(mondayAt + 16 * 60));
+        int dinner = schedule.getNextOpeningToday(mondayAt + 16 * 60);
+        assertEquals("19h00", schedule.getOpenLabel(dinner));
+        assertEquals(OpeningSchedule.NONE, schedule.getNextOpeningToday(mondayAt + 23 * 60 + 30));
+    }
+
+    @Test
+    public void interval_wrapping_over_the_end_of_the_week() {
+        OpeningHours openingHours = new OpeningHours();
+        List<Period> periods = new ArrayList<>();
+        periods.add(period(SATURDAY, "2200", 0, "0200"));
+        openingHours.setPeriods(periods);
+        OpeningSchedule schedule = OpeningSchedule.compile(openingHours, 0);
+
+        int saturdayNight = SATURDAY * 24 * 60 + 23 * 60;
+        int sundayMorning = 60 + 30;
+        assertEquals(0, schedule.getOpenInterval(saturdayNight));
+        assertEquals(0, schedule.getOpenInterval(sundayMorning));
+        assertEquals(30, schedule.getMinutesBeforeClosing(0, sundayMorning));
+        assertTrue(schedule.isClosingSoon(0, sundayMorning));
+        assertEquals(OpeningSchedule.NONE, schedule.getOpenInterval(3 * 60));
+    }
+
+    @Test
+    public void always_open_and_missing_periods() {
+        OpeningHours alwaysOpen = new OpeningHours();
+        Period period = new Period();
+        Open open = new Open();
+        open.setDay(0);
+        open.setTime("0000");
+        period.setOpen(open);
+        List<Period> periods = new ArrayList<>();
+        periods.add(period);
+        alwaysOpen.setPeriods(periods);
+
+        assertTrue(OpeningSchedule.compile(alwaysOpen, 0).isAlwaysOpen());
+        assertNull(OpeningSchedule.compile(new OpeningHours(), 0));
+        assertNull(OpeningSchedule.compile(null, 0));
+    }
+
+    @Test
+    public void benchmark_parsed_vs_compiled() {
+        // The previous code only handled one period per day
+        List<Period> periods = new ArrayList<>();
+        for (int day = 0; day < 7; day++)
+            periods.add(period(day, "1100", day, "2330"));
+        OpeningHours openingHours = new OpeningHours();
+        openingHours.setPeriods(periods);
+        OpeningSchedule schedule = OpeningSchedule.compile(openingHours, null);
+        int today = OpeningHours.getTodaysDay();
+        long sink = 0;
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += parsedStatus(openingHours, today).length();
+            sink += compiledStatus(schedule);
+        }
+        long allocatedBefore = getAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += parsedStatus(openingHours, today).length();
+        long parsedTime = System.nanoTime() - start;
+        long parsedAllocated = getAllocatedBytes() - allocatedBefore;
+
+        allocatedBefore = getAllocatedBytes();
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += compiledStatus(schedule);
+        long compiledTime = System.nanoTime() - start;
+        long compiledAllocated = getAllocatedBytes() - allocatedBefore;
+
+        System.out.printf("opening hours (%d) : parsed %d ns / %d bytes, compiled %d ns / %d bytes per bind%n",
+                sink % 10, parsedTime / ITERATIONS, parsedAllocated / ITERATIONS,
+                compiledTime / ITERATIONS, compiledAllocated / ITERATIONS);
+    }
+
+    // What RestaurantListAdapter did before : format the time, parse the period strings, build the label
+    private static String parsedStatus(OpeningHours openingHours, int today) {
+        Period period = openingHours.getPeriods().size() == Calendar.DAY_OF_WEEK ? openingHours.getPeriods().get(today) : null;
+        if (period == null)
+            return "";
+        DateFormat format = new SimpleDateFormat("HHmm", Locale.getDefault());
+        int now = Integer.parseInt(format.format(new Date()));
+        String time = period.getClose().getTime();
+        if (Integer.parseInt(time) - now > 0 && Integer.parseInt(time) - now < 100)
+            return "closing soon";
+        return time.substring(0, 2) + "h" + time.substring(2);
+    }
+
+    private static int compiledStatus(OpeningSchedule schedule) {
+        int now = schedule.getMinuteOfWeek(System.currentTimeMillis());
+        int interval = schedule.getOpenInterval(now);
+        if (interval == OpeningSchedule.NONE)
+            return schedule.getNextOpeningToday(now);
+        return schedule.isClosingSoon(interval, now) ? -2 : schedule.getCloseLabel(interval).length();
+    }
+
+    // Two services every day, like most of the restaurants
+    private static OpeningHours lunchAndDinnerEveryDay() {
+        List<Period> periods = new ArrayList<>();
+        for (int day = 0; day < 7; day++) {
+            periods.add(period(day, "1900", day, "2330"));
+            periods.add(period(day, "1130", day, "1430"));
+        }
+        OpeningHours openingHours = new OpeningHours();
+        openingHours.setPeriods(periods);
+        return openingHours;
+    }
+
+    private static Period period(int openDay, String openTime, int closeDay, String closeTime) {
+        Open open = new Open();
+        open.setDay(openDay);
+        open.setTime(openTime);
+        Close close = new Close();
+        close.setDay(closeDay);
+        close.setTime(closeTime);
+        Period period = new Period();
+        period.setOpen(open);
+        period.setClose(close);
+        return period;
+    }
+
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+}
@@ -0,0 +1,251 @@
+package com.sophieopenclass.go4lunch.repository;
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+
+import com.sophieopenclass.go4lunch.models.DailyLunches;
+import com.sophieopenclass.go4lunch.models.Restaurant;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Users choosing and cancelling at the same time through updateChosenRestaurant and deleteChosenRestaurant.
+ * The transactions run on an in-memory store which, like Firestore, runs the transaction function again
+ * when lunches/{date} changed between the read and the commit.
+ */
+@RunWith(JUnit4.class)
+public class ChosenRestaurantConcurrencyTest {
+    private static final String DATE = "01-01-2021";
+    private static final int USERS = 6;
+    private static final int WRITES_PER_USER = 200;
+    private static final List<Restaurant> RESTAURANTS = new ArrayList<>();
+
+    static {
+        for (int i = 0; i < 3; i++)
+            RESTAURANTS.add(new Restaurant("place" + i, "Restaurant " + i, i + " rue", null, i));
+    }
+
+    @Rule
+    public InstantTaskExecutorRule instantExecutorRule = new InstantTaskExecutorRule();
+
+    @Test
+    public void concurrent_choices_keep_the_lunches_consistent_with_the_users() throws InterruptedException {
+        ConflictingStore store = new ConflictingStore(Integer.MAX_VALUE);
+        UserDataRepository repository = new UserDataRepository(null, null, store);
+        AtomicInteger writtenCount = new AtomicInteger();
+        runConcurrently(USERS, user -> {
+            // Each user changes their mind at random, the last write of a user is the one kept
+            Random random = new Random(user);
+            for (int i = 0; i < WRITES_PER_USER; i++) {
+                int choice = random.nextInt(RESTAURANTS.size() + 1);
+                if (choice == RESTAURANTS.size())
+                    repository.deleteChosenRestaurant(uid(user), DATE).observeForever(written -> {
+                        if (written)
+                            writtenCount.incrementAndGet();
+                    });
+                else
+                    repository.updateChosenRestaurant(uid(user), RESTAURANTS.get(choice), DATE)
+                            .observeForever(restaurant -> {
+                                if (restaurant != null)
+                                    writtenCount.incrementAndGet();
+                            });
+            }
+        });
+
+        assertEquals(USERS * WRITES_PER_USER, writtenCount.get());
+        assertConsistent(store);
+    }
+
+    @Test
+    public void choice_read_before_another_commit_is_computed_again() {
+        ConflictingStore store = new ConflictingStore(Integer.MAX_VALUE);
+        UserDataRepository repository = new UserDataRepository(null, null, store);
+        repository.updateChosenRestaurant(uid(1), RESTAURANTS.get(0), DATE);
+        // uid1 moves to place1 after uid0 has read the document, and before uid0 commits
+        store.betweenReadAndCommit = () -> repository.updateChosenRestaurant(uid(1), RESTAURANTS.get(1), DATE);
+        repository.updateChosenRestaurant(uid(0), RESTAURANTS.get(0), DATE);
+
+        assertEquals(1, store.getConflictCount());
+        assertEquals(Collections.singletonList(uid(0)), store.getLunches().getUids("place0"));
+        assertEquals(Collections.singletonList(uid(1)), store.getLunches().getUids("place1"));
+        assertConsistent(store);
+    }
+
+    @Test
+    public void a_user_toggling_while_others_choose_is_counted_once() throws InterruptedException {
+        ConflictingStore store = new ConflictingStore(Integer.MAX_VALUE);
+        UserDataRepository repository = new UserDataRepository(null, null, store);
+        Restaurant restaurant = RESTAURANTS.get(0);
+        runConcurrently(USERS, user -> {
+            for (int i = 0; i < WRITES_PER_USER; i++)
+                if (user == 0 && i % 2 == 1)
+                    repository.deleteChosenRestaurant(uid(user), DATE);
+                else
+                    repository.updateChosenRestaurant(uid(user), restaurant, DATE);
+        });
+
+        // The toggling user ends with a cancel, the others chose the same restaurant
+        assertEquals(USERS - 1, store.getLunches().getCount(restaurant.getPlaceId()));
+        assertConsistent(store);
+    }
+
+    @Test
+    public void transaction_out_of_retries_writes_nothing() throws InterruptedException {
+        // Firestore gives up after 5 attempts : the user's choice and the lunches are both left unchanged
+        ConflictingStore store = new ConflictingStore(5);
+        UserDataRepository repository = new UserDataRepository(null, null, store);
+        AtomicInteger failedCount = new AtomicInteger();
+        runConcurrently(USERS, user -> {
+            for (int i = 0; i < WRITES_PER_USER; i++)
+                repository.updateChosenRestaurant(uid(user), RESTAURANTS.get(i % RESTAURANTS.size()), DATE)
+                        .observeForever(restaurant -> {
+                            if (restaurant == null)
+                                failedCount.incrementAndGet();
+                        });
+        });
+
+        assertEquals(store.getAbortedCount(), failedCount.get());
+        assertConsistent(store);
+    }
+
+    private static void assertConsistent(ConflictingStore store) {
+        Map<String, List<String>> expected = new HashMap<>();
+        for (Map.Entry<String, Restaurant> choice : store.getChoices().entrySet()) {
+            String placeId = choice.getValue().getPlaceId();
+            if (!expected.containsKey(placeId))
+                expected.put(placeId, new ArrayList<>());
+            expected.get(placeId).add(choice.getKey());
+        }
+        Map<String, List<String>> actual = new HashMap<>();
+        for (String placeId : store.getLunches().getRestaurants().keySet())
+            actual.put(placeId, store.getLunches().getUids(placeId));
+        for (List<String> uids : expected.values())
+            Collections.sort(uids);
+        for (List<String> uids : actual.values())
+            Collections.sort(uids);
+        assertEquals(expected, actual);
+    }
+
+    private static String uid(int user) {
+        return "uid" + user;
+    }
+
+    private interface UserWrites {
+        void run(int user);
+    }
+
+    private static void runConcurrently(int users, UserWrites userWrites) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(users);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int user = 0; user < users; user++) {
+            int currentUser = user;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                userWrites.run(currentUser);
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+    }
+
+    /**
+     * lunches/{date} and the users' choices for this date. Each attempt reads a version of the document,
+     * and only commits if it's still the current one : otherwise it's run again, up to maxAttempts.
+     */
+    private static class ConflictingStore implements ChoiceTransactionRunner {
+        private final int maxAttempts;
+        private DailyLunches lunches = new DailyLunches();
+        private final Map<String, Restaurant> choices = new HashMap<>();
+        private int version;
+        private int conflictCount;
+        private int abortedCount;
+        // Run once, by the next attempt, between its read and its commit
+        Runnable betweenReadAndCommit;
+
+        ConflictingStore(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        @Override
+        public void run(String uid, String date, Choice choice, Callback callback) {
+            for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+                DailyLunches readLunches;
+                int readVersion;
+                synchronized (this) {
+                    readLunches = new DailyLunches(lunches);
+                    readVersion = version;
+                }
+                ChosenRestaurantWrite write = choice.apply(readLunches, "User " + uid);
+                Runnable otherWrite;
+                synchronized (this) {
+                    otherWrite = betweenReadAndCommit;
+                    betweenReadAndCommit = null;
+                }
+                if (otherWrite != null)
+                    otherWrite.run();
+                else
+                    // Leaves time for another user to commit in between
+                    Thread.yield();
+                synchronized (this) {
+                    if (version == readVersion) {
+                        commit(uid, write);
+                        callback.onComplete(null);
+                        return;
+                    }
+                    conflictCount++;
+                }
+            }
+            synchronized (this) {
+                abortedCount++;
+            }
+            callback.onComplete(new IllegalStateException("Too much contention on lunches/" + date));
+        }
+
+        private void commit(String uid, ChosenRestaurantWrite write) {
+            if (write.getUserChoice() instanceof Restaurant)
+                choices.put(uid, (Restaurant) write.getUserChoice());
+            else
+                choices.remove(uid);
+            lunches = (DailyLunches) write.getLunches();
+            version++;
+        }
+
+        synchronized DailyLunches getLunches() {
+            return lunches;
+        }
+
+        synchronized Map<String, Restaurant> getChoices() {
+            return new HashMap<>(choices);
+        }
+
+        synchronized int getConflictCount() {
+            return conflictCount;
+        }
+
+        synchronized int getAbortedCount() {
+            return abortedCount;
+        }
+    }
+}
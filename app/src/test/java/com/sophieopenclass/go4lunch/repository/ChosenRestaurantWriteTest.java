@@ -0,0 +1,85 @@
+package com.sophieopenclass.go4lunch.repository;
+
+import com.google.firebase.firestore.FieldValue;
+import com.sophieopenclass.go4lunch.models.DailyLunches;
+import com.sophieopenclass.go4lunch.models.Restaurant;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.sophieopenclass.go4lunch.utils.Constants.LUNCH_RESTAURANTS_FIELD;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Writes of updateChosenRestaurant and deleteChosenRestaurant, in a transaction and in the offline batch.
+ */
+@RunWith(JUnit4.class)
+public class ChosenRestaurantWriteTest {
+    private final Restaurant place2 = new Restaurant("place2", "Pizza", "1 rue", null, 2);
+
+    @Test
+    public void transaction_moves_the_user_without_modifying_the_document_read() {
+        DailyLunches lunches = new DailyLunches();
+        lunches.choose("uid1", "Alice", "place1");
+        lunches.choose("uid2", "Bob", "place1");
+
+        ChosenRestaurantWrite write = ChosenRestaurantWrite.inTransaction(lunches, "uid1", "Alice", place2);
+        DailyLunches newLunches = (DailyLunches) write.getLunches();
+        assertSame(place2, write.getUserChoice());
+        assertEquals(Collections.singletonList("uid2"), newLunches.getUids("place1"));
+        assertEquals(Collections.singletonList("uid1"), newLunches.getUids("place2"));
+        assertEquals(2, lunches.getCount("place1"));
+    }
+
+    @Test
+    public void transaction_cancel_removes_the_user_and_deletes_the_field() {
+        DailyLunches lunches = new DailyLunches();
+        lunches.choose("uid1", "Alice", "place1");
+
+        ChosenRestaurantWrite write = ChosenRestaurantWrite.inTransaction(lunches, "uid1", "Alice", null);
+        assertSame(FieldValue.delete(), write.getUserChoice());
+        assertTrue(((DailyLunches) write.getLunches()).getRestaurants().isEmpty());
+    }
+
+    @Test
+    public void merge_deletes_the_user_from_the_previous_restaurant() {
+        ChosenRestaurantWrite write = ChosenRestaurantWrite.asMerge("place1", "uid1", "Alice", place2);
+        Map<String, Map<String, Object>> expected = new HashMap<>();
+        expected.put("place1", Collections.singletonMap("uid1", FieldValue.delete()));
+        expected.put("place2", Collections.singletonMap("uid1", "Alice"));
+        assertEquals(Collections.singletonMap(LUNCH_RESTAURANTS_FIELD, expected), write.getLunches());
+        assertSame(place2, write.getUserChoice());
+    }
+
+    @Test
+    public void merge_keeps_the_user_when_the_previous_choice_is_the_same() {
+        ChosenRestaurantWrite write = ChosenRestaurantWrite.asMerge("place2", "uid1", "Alice", place2);
+        Map<String, Map<String, Object>> expected =
+                Collections.singletonMap("place2", Collections.singletonMap("uid1", "Alice"));
+        assertEquals(Collections.singletonMap(LUNCH_RESTAURANTS_FIELD, expected), write.getLunches());
+    }
+
+    @Test
+    public void merge_cancel_only_deletes_the_user() {
+        ChosenRestaurantWrite write = ChosenRestaurantWrite.asMerge("place1", "uid1", "Alice", null);
+        Map<String, Map<String, Object>> expected =
+                Collections.singletonMap("place1", Collections.singletonMap("uid1", FieldValue.delete()));
+        assertEquals(Collections.singletonMap(LUNCH_RESTAURANTS_FIELD, expected), write.getLunches());
+        assertSame(FieldValue.delete(), write.getUserChoice());
+    }
+
+    @Test
+    public void merge_without_previous_choice_only_adds_the_user() {
+        ChosenRestaurantWrite write = ChosenRestaurantWrite.asMerge(null, "uid1", "Alice", place2);
+        Map<String, Map<String, Object>> expected =
+                Collections.singletonMap("place2", Collections.singletonMap("uid1", "Alice"));
+        assertEquals(Collections.singletonMap(LUNCH_RESTAURANTS_FIELD, expected), write.getLunches());
+    }
+}
@@ -0,0 +1,170 @@
+package com.sophieopenclass.go4lunch.repository;
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+
+import com.sophieopenclass.go4lunch.models.NearbyPage;
+import com.sophieopenclass.go4lunch.models.json_to_java.PlaceRow;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pages are answered by hand : checks which pages the list asks for, and what it displays.
+ */
+@RunWith(JUnit4.class)
+public class NearbyPagedListTest {
+    private static final int PREFETCH_DISTANCE = 2;
+    private final List<String> requestedPages = new ArrayList<>();
+    private final List<String> prefetchedPages = new ArrayList<>();
+    private final Map<String, NearbyPlacesPager.Listener> pendingPages = new HashMap<>();
+    private NearbyPagedList.PageSource pageSource;
+
+    @Rule
+    public InstantTaskExecutorRule instantExecutorRule = new InstantTaskExecutorRule();
+
+    @Before
+    public void setup() {
+        pageSource = new NearbyPagedList.PageSource() {
+            @Override
+            public Runnable loadPage(String pageKey, NearbyPlacesPager.Listener listener) {
+                requestedPages.add(pageKey);
+                pendingPages.put(pageKey, listener);
+                return () -> pendingPages.remove(pageKey);
+            }
+
+            @Override
+            public void prefetch(String pageKey) {
+                prefetchedPages.add(pageKey);
+            }
+        };
+    }
+
+    @Test
+    public void placeholders_are_displayed_until_the_first_page() {
+        NearbyPagedList pagedList = new NearbyPagedList(pageSource, rows("indexed"), PREFETCH_DISTANCE);
+        assertEquals(Collections.singletonList(NearbyPagedList.FIRST_PAGE), requestedPages);
+        assertEquals(placeIds("indexed"), placeIds(pagedList.getRows().getValue()));
+
+        answer(NearbyPagedList.FIRST_PAGE, page(null, "a", "b"));
+        assertEquals(placeIds("a", "b"), placeIds(pagedList.getRows().getValue()));
+    }
+
+    @Test
+    public void next_page_is_loaded_once_within_the_prefetch_distance() {
+        NearbyPagedList pagedList = new NearbyPagedList(pageSource, Collections.emptyList(), PREFETCH_DISTANCE);
+        answer(NearbyPagedList.FIRST_PAGE, page("token1", "a", "b", "c", "d", "e"));
+        assertEquals(Collections.singletonList("token1"), prefetchedPages);
+
+        pagedList.loadAround(1);
+        assertFalse(requestedPages.contains("token1"));
+        pagedList.loadAround(3);
+        pagedList.loadAround(4);
+        assertEquals(1, Collections.frequency(requestedPages, "token1"));
+        assertTrue(pagedList.isLoadingNextPage().getValue());
+
+        answer("token1", page(null, "f", "g"));
+        assertFalse(pagedList.isLoadingNextPage().getValue());
+        // Scrolling back and forth on the last page doesn't request anything
+        pagedList.loadAround(0);
+        pagedList.loadAround(6);
+        assertEquals(placeIds("a", "b", "c", "d", "e", "f", "g"), placeIds(pagedList.getRows().getValue()));
+        assertEquals(2, requestedPages.size());
+        assertEquals(2, pagedList.getLoadedPageCount());
+    }
+
+    @Test
+    public void places_of_previous_pages_are_left_out() {
+        NearbyPagedList pagedList = new NearbyPagedList(pageSource, Collections.emptyList(), PREFETCH_DISTANCE);
+        answer(NearbyPagedList.FIRST_PAGE, page("token1", "a", "b"));
+        pagedList.loadAround(1);
+        answer("token1", page(null, "b", "c", "a"));
+        assertEquals(placeIds("a", "b", "c"), placeIds(pagedList.getRows().getValue()));
+        assertEquals(2, pagedList.getDuplicateCount());
+    }
+
+    @Test
+    public void a_page_announcing_a_loaded_page_is_the_last_one() {
+        NearbyPagedList pagedList = new NearbyPagedList(pageSource, Collections.emptyList(), PREFETCH_DISTANCE);
+        answer(NearbyPagedList.FIRST_PAGE, page("token1", "a"));
+        pagedList.loadAround(0);
+        answer("token1", page("token1", "b"));
+        pagedList.loadAround(1);
+        assertEquals(2, requestedPages.size());
+    }
+
+    @Test
+    public void a_failed_next_page_is_requested_again() {
+        NearbyPagedList pagedList = new NearbyPagedList(pageSource, Collections.emptyList(), PREFETCH_DISTANCE);
+        answer(NearbyPagedList.FIRST_PAGE, page("token1", "a"));
+        pagedList.loadAround(0);
+        answer("token1", null);
+        assertEquals(placeIds("a"), placeIds(pagedList.getRows().getValue()));
+        pagedList.loadAround(0);
+        assertEquals(2, Collections.frequency(requestedPages, "token1"));
+    }
+
+    @Test
+    public void refreshed_first_page_replaces_the_saved_one() {
+        NearbyPagedList pagedList = new NearbyPagedList(pageSource, Collections.emptyList(), PREFETCH_DISTANCE);
+        NearbyPlacesPager.Listener firstPage = pendingPages.get(NearbyPagedList.FIRST_PAGE);
+        firstPage.onPage(page(null, "a", "b"));
+        firstPage.onPage(page("token1", "b", "c"));
+        assertEquals(placeIds("b", "c"), placeIds(pagedList.getRows().getValue()));
+        assertEquals(1, pagedList.getLoadedPageCount());
+        assertEquals(0, pagedList.getDuplicateCount());
+    }
+
+    @Test
+    public void cancel_stops_the_pages_being_loaded() {
+        NearbyPagedList pagedList = new NearbyPagedList(pageSource, Collections.emptyList(), PREFETCH_DISTANCE);
+        answer(NearbyPagedList.FIRST_PAGE, page("token1", "a"));
+        pagedList.loadAround(0);
+        pagedList.cancel();
+        assertTrue(pendingPages.isEmpty());
+        assertFalse(pagedList.isLoadingNextPage().getValue());
+    }
+
+    private void answer(String pageKey, NearbyPage page) {
+        pendingPages.get(pageKey).onPage(page);
+    }
+
+    private static NearbyPage page(String nextPageToken, String... placeIds) {
+        return new NearbyPage(rows(placeIds), nextPageToken);
+    }
+
+    private static List<PlaceRow> rows(String... placeIds) {
+        List<PlaceRow> placeRows = new ArrayList<>();
+        for (String placeId : placeIds) {
+            PlaceRow placeRow = new PlaceRow();
+            placeRow.setPlaceId(placeId);
+            placeRows.add(placeRow);
+        }
+        return placeRows;
+    }
+
+    private static List<String> placeIds(String... placeIds) {
+        List<String> list = new ArrayList<>();
+        Collections.addAll(list, placeIds);
+        return list;
+    }
+
+    private static List<String> placeIds(List<PlaceRow> placeRows) {
+        List<String> placeIds = new ArrayList<>();
+        for (PlaceRow placeRow : placeRows)
+            placeIds.add(placeRow.getPlaceId());
+        return placeIds;
+    }
+}
@@ -0,0 +1,84 @@
+package com.sophieopenclass.go4lunch.utils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Autocomplete answers reused for the same query, or filtered from a complete shorter query.
+ */
+@RunWith(JUnit4.class)
+public class PredictionCacheTest {
+    private static final double LAT = 48.8566;
+    private static final double LNG = 2.3522;
+    private static final double DELTA = 1e-9;
+
+    private static List<PredictionCache.Prediction> predictions() {
+        return Arrays.asList(
+                new PredictionCache.Prediction("place1", "Pizza Roma, 1 rue de Rivoli"),
+                new PredictionCache.Prediction("place2", "Pizzeria Napoli, 5 rue du Bac"),
+                new PredictionCache.Prediction("place3", "Le Pizarro, 8 rue Saint-Denis"));
+    }
+
+    @Test
+    public void exact_query_is_a_hit() {
+        PredictionCache cache = new PredictionCache(10);
+        cache.put("piz", LAT, LNG, predictions(), true);
+        assertEquals(Arrays.asList("place1", "place2", "place3"), cache.get("Piz", LAT, LNG));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1.0, cache.getHitRate(), DELTA);
+    }
+
+    @Test
+    public void longer_query_is_filtered_from_a_complete_prefix() {
+        PredictionCache cache = new PredictionCache(10);
+        cache.put("piz", LAT, LNG, predictions(), true);
+        assertEquals(Arrays.asList("place1", "place2"), cache.get("pizz", LAT, LNG));
+        assertEquals(1, cache.getPrefixHitCount());
+        // The filtered answer is kept for the next lookup
+        assertEquals(Arrays.asList("place1", "place2"), cache.get("pizz", LAT, LNG));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void incomplete_prefix_is_not_used() {
+        PredictionCache cache = new PredictionCache(10);
+        cache.put("piz", LAT, LNG, predictions(), false);
+        assertNull(cache.get("pizz", LAT, LNG));
+        assertEquals(0, cache.getPrefixHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.0, cache.getHitRate(), DELTA);
+    }
+
+    @Test
+    public void other_tile_is_a_miss() {
+        PredictionCache cache = new PredictionCache(10);
+        cache.put("piz", LAT, LNG, predictions(), true);
+        assertNull(cache.get("piz", LAT + 0.05, LNG));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void least_recently_used_query_is_evicted() {
+        PredictionCache cache = new PredictionCache(2);
+        cache.put("sushi", LAT, LNG, Collections.<PredictionCache.Prediction>emptyList(), true);
+        cache.put("burger", LAT, LNG, Collections.<PredictionCache.Prediction>emptyList(), true);
+        // "sushi" becomes the most recently used
+        cache.get("sushi", LAT, LNG);
+        cache.put("tacos", LAT, LNG, Collections.<PredictionCache.Prediction>emptyList(), true);
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get("burger", LAT, LNG));
+        assertEquals(Collections.<String>emptyList(), cache.get("sushi", LAT, LNG));
+        assertEquals(Collections.<String>emptyList(), cache.get("tacos", LAT, LNG));
+        // 3 hits out of 4 lookups
+        assertEquals(0.75, cache.getHitRate(), DELTA);
+    }
+}
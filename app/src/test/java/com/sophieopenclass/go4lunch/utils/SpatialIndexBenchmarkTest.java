@@ -0,0 +1,167 @@
+package com.sophieopenclass.go4lunch.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the grid index against a linear scan on 10k places around Paris, and prints the time of
+ * each kind of query for both.
+ */
+@RunWith(JUnit4.class)
+public class SpatialIndexBenchmarkTest {
+    private static final int POINT_COUNT = 10_000;
+    private static final int QUERY_COUNT = 2_000;
+    private static final double CENTER_LAT = 48.8566;
+    private static final double CENTER_LNG = 2.3522;
+    // About 10 km around the center
+    private static final double SPREAD = 0.09;
+    private final List<Point> points = new ArrayList<>();
+    private final SpatialIndex<Point> index = new SpatialIndex<>(250, POINT_COUNT);
+    private final Random random = new Random(42);
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < POINT_COUNT; i++) {
+            Point point = new Point("place" + i, randomLat(), randomLng());
+            points.add(point);
+            index.put(point.id, point.lat, point.lng, point);
+        }
+    }
+
+    @Test
+    public void nearest_matches_linear_scan() {
+        for (int i = 0; i < 100; i++) {
+            double lat = randomLat();
+            double lng = randomLng();
+            List<Point> expected = scanNearest(lat, lng, 20);
+            List<Point> actual = index.findNearest(lat, lng, 20);
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void radius_and_bounds_match_linear_scan() {
+        for (int i = 0; i < 100; i++) {
+            double lat = randomLat();
+            double lng = randomLng();
+            assertEquals(new HashSet<>(scanWithinRadius(lat, lng, 500)),
+                    new HashSet<>(index.findWithinRadius(lat, lng, 500)));
+            assertEquals(new HashSet<>(scanInBounds(lat - 0.01, lng - 0.015, lat + 0.01, lng + 0.015)),
+                    new HashSet<>(index.findWithinBounds(lat - 0.01, lng - 0.015, lat + 0.01, lng + 0.015)));
+        }
+    }
+
+    @Test
+    public void putting_an_id_again_moves_the_point_and_max_size_drops_the_oldest() {
+        SpatialIndex<String> smallIndex = new SpatialIndex<>(250, 2);
+        smallIndex.put("a", CENTER_LAT, CENTER_LNG, "a");
+        smallIndex.put("a", CENTER_LAT + 0.05, CENTER_LNG, "a");
+        assertTrue(smallIndex.findWithinRadius(CENTER_LAT, CENTER_LNG, 100).isEmpty());
+        assertEquals(1, smallIndex.size());
+
+        smallIndex.put("b", CENTER_LAT, CENTER_LNG, "b");
+        smallIndex.put("c", CENTER_LAT, CENTER_LNG, "c");
+        assertEquals(2, smallIndex.size());
+        assertEquals(new HashSet<>(Arrays.asList("b", "c")),
+                new HashSet<>(smallIndex.findWithinRadius(CENTER_LAT, CENTER_LNG, 100)));
+        assertTrue(smallIndex.findWithinRadius(CENTER_LAT + 0.05, CENTER_LNG, 100).isEmpty());
+    }
+
+    @Test
+    public void benchmark_index_vs_linear_scan() {
+        double[] lats = new double[QUERY_COUNT];
+        double[] lngs = new double[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            lats[i] = randomLat();
+            lngs[i] = randomLng();
+        }
+        long sink = 0;
+        // Warm up
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            sink += index.findNearest(lats[i], lngs[i], 20).size() + scanNearest(lats[i], lngs[i], 20).size();
+            sink += index.findWithinRadius(lats[i], lngs[i], 500).size() + scanWithinRadius(lats[i], lngs[i], 500).size();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERY_COUNT; i++)
+            sink += index.findNearest(lats[i], lngs[i], 20).size();
+        long indexNearest = (System.nanoTime() - start) / QUERY_COUNT;
+        start = System.nanoTime();
+        for (int i = 0; i < QUERY_COUNT; i++)
+            sink += scanNearest(lats[i], lngs[i], 20).size();
+        long scanNearest = (System.nanoTime() - start) / QUERY_COUNT;
+
+        start = System.nanoTime();
+        for (int i = 0; i < QUERY_COUNT; i++)
+            sink += index.findWithinRadius(lats[i], lngs[i], 500).size();
+        long indexRadius = (System.nanoTime() - start) / QUERY_COUNT;
+        start = System.nanoTime();
+        for (int i = 0; i < QUERY_COUNT; i++)
+            sink += scanWithinRadius(lats[i], lngs[i], 500).size();
+        long scanRadius = (System.nanoTime() - start) / QUERY_COUNT;
+
+        start = System.nanoTime();
+        for (int i = 0; i < QUERY_COUNT; i++)
+            sink += index.findWithinBounds(lats[i] - 0.01, lngs[i] - 0.015, lats[i] + 0.01, lngs[i] + 0.015).size();
+        long indexBounds = (System.nanoTime() - start) / QUERY_COUNT;
+
+        System.out.printf("%d points (%d) : nearest 20 index %d ns / scan %d ns, 500 m radius index %d ns / scan %d ns,"
+                        + " viewport index %d ns%n", POINT_COUNT, sink % 10, indexNearest, scanNearest,
+                indexRadius, scanRadius, indexBounds);
+    }
+
+    private List<Point> scanNearest(double lat, double lng, int count) {
+        List<Point> sorted = new ArrayList<>(points);
+        Collections.sort(sorted, (left, right) -> Double.compare(
+                GeoDistance.haversine(lat, lng, left.lat, left.lng), GeoDistance.haversine(lat, lng, right.lat, right.lng)));
+        return sorted.subList(0, count);
+    }
+
+    private List<Point> scanWithinRadius(double lat, double lng, double radius) {
+        List<Point> found = new ArrayList<>();
+        for (Point point : points)
+            if (GeoDistance.haversine(lat, lng, point.lat, point.lng) <= radius)
+                found.add(point);
+        return found;
+    }
+
+    private List<Point> scanInBounds(double south, double west, double north, double east) {
+        List<Point> found = new ArrayList<>();
+        for (Point point : points)
+            if (point.lat >= south && point.lat <= north && point.lng >= west && point.lng <= east)
+                found.add(point);
+        return found;
+    }
+
+    private double randomLat() {
+        return CENTER_LAT + (random.nextDouble() - 0.5) * SPREAD;
+    }
+
+    private double randomLng() {
+        return CENTER_LNG + (random.nextDouble() - 0.5) * SPREAD * 1.5;
+    }
+
+    private static class Point {
+        final String id;
+        final double lat;
+        final double lng;
+
+        Point(String id, double lat, double lng) {
+            this.id = id;
+            this.lat = lat;
+            this.lng = lng;
+        }
+    }
+}